@@ -17,201 +17,620 @@ package kenichia.quipapi;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpResponseException;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Form;
 import org.apache.http.client.fluent.Request;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 class QuipAccess {
 
   public static String ENDPOINT = "https://platform.quip.com/1";
 
-  private static Executor _executor = Executor.newInstance(HttpClients.custom()
-      .setDefaultRequestConfig(
-          RequestConfig.custom().setCookieSpec(CookieSpecs.STANDARD).build())
-      .build());
+  // Gson is thread safe; one instance serves every request
+  static final Gson GSON = new Gson();
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long TRANSFER_SIZE = 1024 * 1024;
 
   // ============================================
   // Protected
   // ============================================
 
-  // to handle rate limits when using the library
-  protected static Integer xRateLimitLimit = 0;
-  protected static Integer xRateLimitRemaining = 0;
-  // utc timestamp in seconds
-  protected static Long xRateLimitReset = 0L;
-  protected static Integer xRateLimitRetryAfter = 0;
-  protected static Integer xCompanyRateLimitLimit = 0;
-  protected static Integer xCompanyRateLimitRemaining = 0;
-  // utc timestamp in seconds
-  protected static Long xCompanyRateLimitReset = 0L;
-  protected static Integer xCompanyRetryAfter = 0;
-  protected static Integer xCurrentRetryCount = 0;
-  protected static Integer xMaxRetries = 50;
+  protected static JsonObject _getToJsonObject(QuipClient client, String uri)
+      throws IOException {
+    return _toJsonObject(client, _requestGet(client, uri, QuipAccess::_toString));
+  }
 
-  protected static JsonObject _getToJsonObject(String uri) throws IOException {
-    return _toJsonObject(_requestGet(uri));
+  protected static JsonObject _getToJsonObject(QuipClient client, URI uri)
+      throws IOException {
+    return _toJsonObject(client, _requestGet(client, uri, QuipAccess::_toString));
   }
 
-  protected static JsonObject _getToJsonObject(URI uri) throws IOException {
-    return _toJsonObject(_requestGet(uri));
+  protected static JsonArray _getToJsonArray(QuipClient client, String uri)
+      throws IOException {
+    return _toJsonArray(client, _requestGet(client, uri, QuipAccess::_toString));
   }
 
-  protected static JsonArray _getToJsonArray(String uri) throws IOException {
-    return _toJsonArray(_requestGet(uri));
+  protected static JsonArray _getToJsonArray(QuipClient client, URI uri)
+      throws IOException {
+    return _toJsonArray(client, _requestGet(client, uri, QuipAccess::_toString));
   }
 
-  protected static JsonArray _getToJsonArray(URI uri) throws IOException {
-    return _toJsonArray(_requestGet(uri));
+  /**
+   * Decodes a {@code {"id": {...}}} response while it is being received.
+   *
+   * @param fields - top level fields of each entity to keep.
+   */
+  protected static <T> Map<String, T> _getToEntityMap(QuipClient client,
+      URI uri, Predicate<String> fields, Function<JsonObject, T> factory)
+      throws IOException {
+    QuipJsonDecoder decoder = new QuipJsonDecoder(client, fields);
+    return _requestGet(client, uri, response -> decoder
+        ._decodeMap(response.getEntity().getContent(), factory));
   }
 
-  protected static byte[] _getToByteArray(String uri) throws IOException {
-    HttpResponse res = _requestGet(uri);
-    if (res.getStatusLine().getStatusCode() == 200) {
-      byte[] buff = new byte[(int) res.getEntity().getContentLength()];
-      res.getEntity().getContent().read(buff);
-      return buff;
-    }
-    return null;
+  /**
+   * Decodes a {@code [{...}]} response while it is being received.
+   */
+  protected static <T> List<T> _getToEntityList(QuipClient client, URI uri,
+      Predicate<String> fields, Function<JsonObject, T> factory)
+      throws IOException {
+    QuipJsonDecoder decoder = new QuipJsonDecoder(client, fields);
+    return _requestGet(client, uri, response -> decoder
+        ._decodeArray(response.getEntity().getContent(), factory));
+  }
+
+  /**
+   * Decodes a single entity response while it is being received.
+   */
+  protected static <T> T _getToEntity(QuipClient client, URI uri,
+      Predicate<String> fields, Function<JsonObject, T> factory)
+      throws IOException {
+    QuipJsonDecoder decoder = new QuipJsonDecoder(client, fields);
+    return _requestGet(client, uri, response -> decoder
+        ._decodeObject(response.getEntity().getContent(), factory));
   }
 
-  protected static int _getToStatusCode(String uri) throws IOException {
-    return _requestGet(uri).getStatusLine().getStatusCode();
+  protected static byte[] _getToByteArray(QuipClient client, String uri)
+      throws IOException {
+    return _requestGet(client, uri, response -> (response.getEntity() == null)
+        ? null
+        : EntityUtils.toByteArray(response.getEntity()));
   }
 
-  protected static String _getToString(URI uri) throws IOException {
-    return _toString(_requestGet(uri));
+  protected static long _getToOutputStream(QuipClient client, String uri,
+      OutputStream out) throws IOException {
+    Objects.requireNonNull(out);
+    return _requestGet(client, uri,
+        response -> _copy(response.getEntity(), out));
   }
 
-  protected static JsonObject _postToJsonObject(String uri, Form form)
+  protected static long _getToChannel(QuipClient client, String uri,
+      WritableByteChannel channel) throws IOException {
+    Objects.requireNonNull(channel);
+    return _requestGet(client, uri,
+        response -> _transfer(response.getEntity(), channel));
+  }
+
+  protected static long _getToPath(QuipClient client, String uri, Path path)
+      throws IOException {
+    Objects.requireNonNull(path);
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      return _getToChannel(client, uri, channel);
+    }
+  }
+
+  protected static int _getToStatusCode(QuipClient client, String uri)
       throws IOException {
-    return _toJsonObject(_requestPost(uri, form));
+    return _requestGet(client, uri,
+        response -> response.getStatusLine().getStatusCode());
   }
 
-  protected static JsonObject _postToJsonObject(URI uri, Form form)
+  protected static String _getToString(QuipClient client, URI uri)
       throws IOException {
-    return _toJsonObject(_requestPost(uri, form));
+    return _requestGet(client, uri, QuipAccess::_toString);
   }
 
-  protected static JsonObject _postToJsonObject(String uri,
+  protected static JsonObject _postToJsonObject(QuipClient client, String uri,
+      Form form) throws IOException {
+    return _toJsonObject(client,
+        _requestPost(client, uri, form, QuipAccess::_toString));
+  }
+
+  protected static JsonObject _postToJsonObject(QuipClient client, URI uri,
+      Form form) throws IOException {
+    return _toJsonObject(client,
+        _requestPost(client, uri, form, QuipAccess::_toString));
+  }
+
+  protected static JsonObject _postToJsonObject(QuipClient client, String uri,
       MultipartEntityBuilder multi) throws IOException {
-    return _toJsonObject(_requestPost(uri, multi));
+    return _postToJsonObject(client, uri, multi, true);
   }
 
-  protected static JsonObject _postToJsonObject(URI uri) throws IOException {
-    return _toJsonObject(_requestPost(uri));
+  /**
+   * @param isRepeatable - false if a part can be written only once, in which
+   *                     case a 429 or 503 response is not retried.
+   */
+  protected static JsonObject _postToJsonObject(QuipClient client, String uri,
+      MultipartEntityBuilder multi, boolean isRepeatable) throws IOException {
+    QuipRetryPolicy policy = isRepeatable ? client._getRetryPolicy()
+        : client._getRetryPolicy().withMaxRetries(0);
+    return _toJsonObject(client, _sendRequest(client, policy,
+        () -> Request.Post(uri).body(multi.build()), QuipAccess::_toString));
   }
 
-  protected static JsonArray _postToJsonArray(String uri, Form form)
+  protected static JsonObject _postToJsonObject(QuipClient client, URI uri)
       throws IOException {
-    return _toJsonArray(_requestPost(uri, form));
+    return _toJsonObject(client,
+        _requestPost(client, uri, QuipAccess::_toString));
+  }
+
+  protected static JsonArray _postToJsonArray(QuipClient client, String uri,
+      Form form) throws IOException {
+    return _toJsonArray(client,
+        _requestPost(client, uri, form, QuipAccess::_toString));
+  }
+
+  protected static CompletableFuture<JsonObject> _getToJsonObjectAsync(
+      QuipClient client, String uri) {
+    return _getToJsonObjectAsync(client, URI.create(uri));
+  }
+
+  /**
+   * @return - the response; an error body fails the future with a
+   *         {@link QuipResponseException}.
+   */
+  protected static CompletableFuture<JsonObject> _getToJsonObjectAsync(
+      QuipClient client, URI uri) {
+    return _requestGetAsync(client, uri)
+        .thenApply(body -> _toJsonObjectOrThrow(client, body));
+  }
+
+  protected static CompletableFuture<JsonArray> _getToJsonArrayAsync(
+      QuipClient client, String uri) {
+    return _getToJsonArrayAsync(client, URI.create(uri));
+  }
+
+  protected static CompletableFuture<JsonArray> _getToJsonArrayAsync(
+      QuipClient client, URI uri) {
+    return _requestGetAsync(client, uri)
+        .thenApply(body -> _toJsonArray(client, body));
+  }
+
+  protected static CompletableFuture<JsonObject> _postToJsonObjectAsync(
+      QuipClient client, String uri, Form form) {
+    return _postToJsonObjectAsync(client, URI.create(uri), form);
+  }
+
+  protected static CompletableFuture<JsonObject> _postToJsonObjectAsync(
+      QuipClient client, URI uri, Form form) {
+    return _requestPostAsync(client, uri, form)
+        .thenApply(body -> _toJsonObjectOrThrow(client, body));
+  }
+
+  protected static CompletableFuture<JsonArray> _postToJsonArrayAsync(
+      QuipClient client, String uri, Form form) {
+    return _requestPostAsync(client, URI.create(uri), form)
+        .thenApply(body -> _toJsonArray(client, body));
+  }
+
+  /**
+   * Fetches {@code ids} from a bulk endpoint that takes an {@code ids}
+   * parameter and answers with an object keyed by id. The ids are split into
+   * chunks (see {@link QuipClient.Builder#bulkChunkSize(int)}) and a bounded
+   * number of chunks (see {@link QuipClient.Builder#bulkParallelism(int)})
+   * are in flight at once, each going through the client's rate limiter.
+   *
+   * @param uri     - bulk endpoint.
+   * @param ids     - ids to fetch; duplicates are requested once.
+   * @param factory - converts one entry of the response into an entity.
+   * @param params  - extra query parameters sent with every chunk.
+   */
+  protected static <T> CompletableFuture<QuipBulkResult<T>> _getBulkAsync(
+      QuipClient client, String uri, String[] ids,
+      Function<JsonObject, T> factory, NameValuePair... params) {
+    String[] distinct = Stream.of(ids).distinct().toArray(String[]::new);
+    int chunkSize = client._getBulkChunkSize();
+    List<String[]> chunks = new ArrayList<>();
+    for (int i = 0; i < distinct.length; i += chunkSize)
+      chunks.add(Arrays.copyOfRange(distinct, i,
+          Math.min(distinct.length, i + chunkSize)));
+    Map<String, T> found = new ConcurrentHashMap<>();
+    Map<String, Throwable> failures = new ConcurrentHashMap<>();
+    AtomicInteger next = new AtomicInteger();
+    CompletableFuture<?>[] workers = new CompletableFuture<?>[Math
+        .min(client._getBulkParallelism(), chunks.size())];
+    for (int i = 0; i < workers.length; i++)
+      workers[i] = _getNextChunkAsync(client, uri, chunks, next, factory,
+          found, failures, params);
+    return CompletableFuture.allOf(workers)
+        .thenApply(v -> new QuipBulkResult<>(ids, found, failures));
   }
 
   // ============================================
   // Private
   // ============================================
 
-  private static HttpResponse _requestGet(String uri) throws IOException {
-    return _sendRequest(Request.Get(uri));
+  private static <T> CompletableFuture<Void> _getNextChunkAsync(
+      QuipClient client, String uri, List<String[]> chunks, AtomicInteger next,
+      Function<JsonObject, T> factory, Map<String, T> found,
+      Map<String, Throwable> failures, NameValuePair[] params) {
+    int index = next.getAndIncrement();
+    if (index >= chunks.size())
+      return CompletableFuture.completedFuture(null);
+    String[] chunk = chunks.get(index);
+    CompletableFuture<JsonObject> request;
+    try {
+      request = _getToJsonObjectAsync(client, new URIBuilder(uri)
+          .addParameter("ids", String.join(",", chunk))
+          .addParameters(Arrays.asList(params)).build());
+    } catch (URISyntaxException e) {
+      request = CompletableFuture.failedFuture(e);
+    }
+    return request.handle((json, error) -> {
+      for (String id : chunk) {
+        if (error != null) {
+          failures.put(id, (error instanceof CompletionException
+              && error.getCause() != null) ? error.getCause() : error);
+          continue;
+        }
+        JsonElement element = json.get(id);
+        if (element == null || !element.isJsonObject()) {
+          failures.put(id, new NoSuchElementException("Not returned: " + id));
+          continue;
+        }
+        try {
+          found.put(id, factory.apply(element.getAsJsonObject()));
+        } catch (RuntimeException e) {
+          failures.put(id, e);
+        }
+      }
+      return null;
+    }).thenCompose(v -> _getNextChunkAsync(client, uri, chunks, next, factory,
+        found, failures, params));
   }
 
-  private static HttpResponse _requestGet(URI uri) throws IOException {
-    return _sendRequest(Request.Get(uri));
+  private static <T> T _requestGet(QuipClient client, String uri,
+      ResponseHandler<T> handler) throws IOException {
+    return _sendRequest(client, () -> Request.Get(uri), handler);
   }
 
-  private static HttpResponse _requestPost(String uri, Form form)
-      throws IOException {
-    return _sendRequest(Request.Post(uri)
-        .body(new UrlEncodedFormEntity(form.build(), Consts.UTF_8)));
+  private static <T> T _requestGet(QuipClient client, URI uri,
+      ResponseHandler<T> handler) throws IOException {
+    return _sendRequest(client, () -> Request.Get(uri), handler);
+  }
+
+  private static <T> T _requestPost(QuipClient client, String uri, Form form,
+      ResponseHandler<T> handler) throws IOException {
+    return _sendRequest(client, () -> Request.Post(uri)
+        .body(new UrlEncodedFormEntity(form.build(), Consts.UTF_8)), handler);
+  }
+
+  private static <T> T _requestPost(QuipClient client, URI uri, Form form,
+      ResponseHandler<T> handler) throws IOException {
+    return _sendRequest(client, () -> Request.Post(uri)
+        .body(new UrlEncodedFormEntity(form.build(), Consts.UTF_8)), handler);
   }
 
-  private static HttpResponse _requestPost(URI uri, Form form)
+  private static <T> T _requestPost(QuipClient client, URI uri,
+      ResponseHandler<T> handler) throws IOException {
+    return _sendRequest(client, () -> Request.Post(uri), handler);
+  }
+
+  /**
+   * Sends a request, retrying 429 and 503 responses according to the
+   * client's {@link QuipRetryPolicy}. A fresh {@link Request} is taken from
+   * {@code requestFactory} for every attempt, and {@code handler} reads the
+   * successful response while its entity is still streaming from the
+   * connection.
+   */
+  private static <T> T _sendRequest(QuipClient client,
+      Supplier<Request> requestFactory, ResponseHandler<T> handler)
       throws IOException {
-    return _sendRequest(Request.Post(uri)
-        .body(new UrlEncodedFormEntity(form.build(), Consts.UTF_8)));
+    return _sendRequest(client, client._getRetryPolicy(), requestFactory,
+        handler);
   }
 
-  private static HttpResponse _requestPost(String uri,
-      MultipartEntityBuilder multi) throws IOException {
-    return _sendRequest(Request.Post(uri).body(multi.build()));
-  }
-
-  private static HttpResponse _requestPost(URI uri) throws IOException {
-    return _sendRequest(Request.Post(uri));
-  }
-
-  private static HttpResponse _sendRequest(Request req) throws IOException {
-    Gson gson = new Gson();
-    Request originalReq = gson.fromJson(gson.toJson(req), Request.class);
-    if (QuipClient._isDebugEnabled())
-      System.out.println(System.lineSeparator() + "Request> " + req.toString());
-    String token = QuipClient._getBearerToken();
-    req.addHeader(HttpHeaders.AUTHORIZATION, token);
-    HttpResponse response = _executor.execute(req).returnResponse();
-    if (QuipClient._isDebugEnabled())
-      System.out.println("Response> " + response.getStatusLine().toString()
-          + " " + response.getEntity().toString());
-    updateRateLimits(response);
-    int statusCode = response.getStatusLine().getStatusCode();
-    if (statusCode == 429 || statusCode == 503) {
-      if (xCurrentRetryCount < xMaxRetries) {
-        long backoff = (xRateLimitRetryAfter + (xRateLimitLimit - xRateLimitRemaining)/100)* 100L;
-        xCurrentRetryCount++;
-        try {
-          if (QuipClient._isDebugEnabled())
-            System.out.println("Waiting for: " + backoff + "ms" + ", retry count: " + xCurrentRetryCount + ", error code: " + statusCode);
-          Thread.sleep(backoff);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
-        response = _sendRequest(originalReq);
+  private static <T> T _sendRequest(QuipClient client, QuipRetryPolicy policy,
+      Supplier<Request> requestFactory, ResponseHandler<T> handler)
+      throws IOException {
+    QuipLogger logger = client._getLogger();
+    for (int retryCount = 0;; retryCount++) {
+      Request req = requestFactory.get();
+      if (logger != null)
+        logger.debug(System.lineSeparator() + "Request> " + req.toString());
+      req.addHeader(HttpHeaders.AUTHORIZATION, client._getBearerToken());
+      client.getRateLimiter()._acquire();
+      int attempt = retryCount;
+      Outcome<T> outcome = client._getExecutor().execute(req)
+          .handleResponse(response -> {
+            if (logger != null)
+              logger.debug("Response> " + response.getStatusLine()
+                  + " " + response.getEntity());
+            Function<String, String> headers = _headersOf(response);
+            client._updateRateLimits(headers);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (QuipRetryPolicy._isRetryable(statusCode)
+                && attempt < policy.getMaxRetries()) {
+              long backoff = policy._getDelayMillis(attempt,
+                  _retryAfterSeconds(headers));
+              if (logger != null)
+                logger.debug("Waiting for: " + backoff + "ms" + ", retry count: "
+                    + (attempt + 1) + ", error code: " + statusCode);
+              return Outcome.retryAfter(backoff);
+            }
+            handleErrorResponse(response);
+            return Outcome.of(handler.handleResponse(response));
+          });
+      if (!outcome._isRetry)
+        return outcome._value;
+      try {
+        Thread.sleep(outcome._backoffMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting to retry");
       }
     }
-    handleErrorResponse(response);
-    xCurrentRetryCount = 0;
-    return response;
+  }
+
+  private static CompletableFuture<String> _requestGetAsync(QuipClient client,
+      URI uri) {
+    return _sendRequestAsync(client, HttpRequest.newBuilder(uri).GET(), 0);
+  }
+
+  private static CompletableFuture<String> _requestPostAsync(
+      QuipClient client, URI uri, Form form) {
+    return _sendRequestAsync(client, HttpRequest.newBuilder(uri)
+        .header(HttpHeaders.CONTENT_TYPE,
+            ContentType.APPLICATION_FORM_URLENCODED.withCharset(Consts.UTF_8)
+                .toString())
+        .POST(HttpRequest.BodyPublishers
+            .ofString(URLEncodedUtils.format(form.build(), Consts.UTF_8))),
+        0);
+  }
+
+  private static CompletableFuture<String> _sendRequestAsync(
+      QuipClient client, HttpRequest.Builder builder, int retryCount) {
+    HttpRequest.Builder attempt = builder.copy()
+        .header(HttpHeaders.AUTHORIZATION, client._getBearerToken());
+    if (client._getSocketTimeout() != null)
+      attempt.timeout(client._getSocketTimeout());
+    HttpRequest req = attempt.build();
+    QuipLogger logger = client._getLogger();
+    if (logger != null)
+      logger.debug(System.lineSeparator() + "Request> " + req.method()
+          + " " + req.uri());
+    return client.getRateLimiter()._acquireAsync()
+        .thenCompose(v -> client._getHttpClient().sendAsync(req,
+            java.net.http.HttpResponse.BodyHandlers.ofString()))
+        .thenCompose(response -> {
+          if (logger != null)
+            logger.debug("Response> " + response.statusCode() + " "
+                + response.uri());
+          Function<String, String> headers = name -> response.headers()
+              .firstValue(name).orElse(null);
+          client._updateRateLimits(headers);
+          int statusCode = response.statusCode();
+          QuipRetryPolicy policy = client._getRetryPolicy();
+          if (QuipRetryPolicy._isRetryable(statusCode)
+              && retryCount < policy.getMaxRetries()) {
+            long backoff = policy._getDelayMillis(retryCount,
+                _retryAfterSeconds(headers));
+            if (logger != null)
+              logger.debug("Scheduling retry in: " + backoff + "ms"
+                  + ", retry count: " + (retryCount + 1) + ", error code: "
+                  + statusCode);
+            // Schedule the retry instead of parking a thread on sleep()
+            return CompletableFuture.runAsync(() -> {
+            }, CompletableFuture.delayedExecutor(backoff,
+                TimeUnit.MILLISECONDS))
+                .thenCompose(
+                    v -> _sendRequestAsync(client, builder, retryCount + 1));
+          }
+          if (statusCode != 200)
+            return CompletableFuture.failedFuture(
+                _toResponseException(statusCode, response.body()));
+          return CompletableFuture.completedFuture(response.body());
+        });
+  }
+
+  private static Function<String, String> _headersOf(HttpResponse response) {
+    return name -> {
+      Header header = response.getFirstHeader(name);
+      return (header == null) ? null : header.getValue();
+    };
+  }
+
+  private static long _retryAfterSeconds(Function<String, String> headers) {
+    return Math.max(_parseSeconds(headers.apply("Retry-After")),
+        _parseSeconds(headers.apply("X-Company-Retry-After")));
+  }
+
+  static long _parseSeconds(String value) {
+    if (value == null)
+      return 0;
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      // Retry-After may also be an HTTP date; fall back to the policy.
+      return 0;
+    }
   }
 
   private static String _toString(HttpResponse response) throws IOException {
     return EntityUtils.toString(response.getEntity());
   }
 
-  private static JsonObject _toJsonObject(HttpResponse response)
+  private static long _copy(HttpEntity entity, OutputStream out)
       throws IOException {
-    JsonObject json = new Gson().fromJson(_toString(response),
-        JsonObject.class);
-    if (QuipClient._isDebugEnabled())
-      System.out.println("Json> " + json.toString());
-    if (_checkError(json))
+    if (entity == null)
+      return 0;
+    long total = 0;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = entity.getContent()) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        total += read;
+      }
+    }
+    out.flush();
+    return total;
+  }
+
+  private static long _transfer(HttpEntity entity,
+      WritableByteChannel channel) throws IOException {
+    if (entity == null)
+      return 0;
+    try (ReadableByteChannel source = Channels
+        .newChannel(entity.getContent())) {
+      if (channel instanceof FileChannel) {
+        // Let the file channel pull straight from the socket stream
+        FileChannel file = (FileChannel) channel;
+        long start = file.position();
+        long position = start;
+        long transferred;
+        while ((transferred = file.transferFrom(source, position,
+            TRANSFER_SIZE)) > 0)
+          position += transferred;
+        file.position(position);
+        return position - start;
+      }
+      long total = 0;
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      while (source.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining())
+          total += channel.write(buffer);
+        buffer.clear();
+      }
+      return total;
+    }
+  }
+
+  private static JsonObject _toJsonObject(QuipClient client, String body) {
+    JsonObject json = GSON.fromJson(body, JsonObject.class);
+    QuipLogger logger = client._getLogger();
+    if (logger != null)
+      logger.debug("Json> " + json.toString());
+    if (_checkError(client, json))
       return null;
     return json;
   }
 
-  private static JsonArray _toJsonArray(HttpResponse response)
-      throws IOException {
-    JsonArray json = new Gson().fromJson(_toString(response), JsonArray.class);
-    if (QuipClient._isDebugEnabled())
-      System.out.println("Json> " + json.toString());
+  private static JsonObject _toJsonObjectOrThrow(QuipClient client,
+      String body) {
+    JsonObject json = GSON.fromJson(body, JsonObject.class);
+    QuipLogger logger = client._getLogger();
+    if (logger != null)
+      logger.debug("Json> " + json.toString());
+    if (_checkError(client, json))
+      throw new CompletionException(_toResponseException(200, json));
     return json;
   }
 
-  private static boolean _checkError(JsonObject json) {
+  /**
+   * @param body - response body, parsed for the Quip error fields if it is a
+   *             json object.
+   */
+  private static QuipResponseException _toResponseException(int statusCode,
+      String body) {
+    JsonObject json = null;
+    try {
+      JsonElement element = JsonParser.parseString(body);
+      if (element.isJsonObject())
+        json = element.getAsJsonObject();
+    } catch (JsonParseException e) {
+      // Not json, e.g. an html error page; only the status is reported
+    }
+    return _toResponseException(statusCode, json);
+  }
+
+  private static QuipResponseException _toResponseException(int statusCode,
+      JsonObject json) {
+    String reasonPhrase = EnglishReasonPhraseCatalog.INSTANCE
+        .getReason(statusCode, Locale.ENGLISH);
+    return new QuipResponseException(statusCode, reasonPhrase,
+        _stringOrNull(json, "error"), _stringOrNull(json, "error_code"),
+        _stringOrNull(json, "error_description"));
+  }
+
+  private static String _stringOrNull(JsonObject json, String key) {
+    JsonElement element = (json == null) ? null : json.get(key);
+    return (element == null || element.isJsonNull()) ? null
+        : element.getAsString();
+  }
+
+  private static JsonArray _toJsonArray(QuipClient client, String body) {
+    JsonArray json = GSON.fromJson(body, JsonArray.class);
+    QuipLogger logger = client._getLogger();
+    if (logger != null)
+      logger.debug("Json> " + json.toString());
+    return json;
+  }
+
+  /**
+   * @return - true if {@code json} is an error body, which is reported to the
+   *         client's logger.
+   */
+  static boolean _checkError(QuipClient client, JsonObject json) {
     if (json.get("error") == null)
       return false;
+    QuipLogger logger = client._getLogger();
+    if (logger == null)
+      return true;
     String errorCode = (json.get("error_code") != null)
         ? json.get("error_code").getAsString()
         : "";
@@ -221,7 +640,7 @@ class QuipAccess {
     String errorDescription = (json.get("error_description") != null)
         ? json.get("error_description").getAsString()
         : "";
-    System.out.println(
+    logger.debug(
         "Error> " + errorCode + " " + error + " (" + errorDescription + ")");
     return true;
   }
@@ -235,43 +654,37 @@ class QuipAccess {
     }
   }
 
-  private static void updateRateLimits(HttpResponse response) {
-    xRateLimitLimit = Integer
-        .valueOf(response.containsHeader("X-Ratelimit-Limit")
-            ? response.getFirstHeader("X-Ratelimit-Limit").getValue()
-            : "0");
-    xRateLimitRemaining = Integer
-        .valueOf(response.containsHeader("X-Ratelimit-Remaining")
-            ? response.getFirstHeader("X-Ratelimit-Remaining").getValue()
-            : "0");
-    xRateLimitReset = Long.valueOf(response.containsHeader("X-Ratelimit-Reset")
-        ? response.getFirstHeader("X-Ratelimit-Reset").getValue()
-        : "0");
-    xRateLimitRetryAfter = Integer
-        .valueOf(response.containsHeader("Retry-After")
-            ? response.getFirstHeader("Retry-After").getValue()
-            : "0");
-
-    xCompanyRateLimitLimit = Integer
-        .valueOf(response.containsHeader("X-Company-RateLimit-Limit")
-            ? response.getFirstHeader("X-Company-RateLimit-Limit").getValue()
-            : "0");
-    xCompanyRateLimitRemaining = Integer
-        .valueOf(response.containsHeader("X-Company-RateLimit-Remaining")
-            ? response.getFirstHeader("X-Company-RateLimit-Remaining")
-                .getValue()
-            : "0");
-    xCompanyRateLimitReset = Long
-        .valueOf(response.containsHeader("X-Company-RateLimit-Reset")
-            ? response.getFirstHeader("X-Company-RateLimit-Reset").getValue()
-            : "0");
-    xCompanyRetryAfter = Integer
-        .valueOf(response.containsHeader("X-Company-Retry-After")
-            ? response.getFirstHeader("X-Company-Retry-After").getValue()
-            : "0");
+  /**
+   * Changes the retry policy of the default client, which every caller of
+   * it shares.
+   *
+   * @deprecated Use {@link QuipClient.Builder#retryPolicy(QuipRetryPolicy)}
+   *             or {@link QuipClient.Builder#maxRetries(int)} on a client of
+   *             your own.
+   */
+  @Deprecated
+  public static void setMaxRetries(int maxRetries) {
+    QuipClient client = QuipClient._getDefault();
+    client._setRetryPolicy(client._getRetryPolicy().withMaxRetries(maxRetries));
   }
 
-  public static void setMaxRetries(int maxRetries) {
-    xMaxRetries = maxRetries;
+  private static class Outcome<T> {
+    private final boolean _isRetry;
+    private final T _value;
+    private final long _backoffMillis;
+
+    private Outcome(boolean isRetry, T value, long backoffMillis) {
+      _isRetry = isRetry;
+      _value = value;
+      _backoffMillis = backoffMillis;
+    }
+
+    private static <T> Outcome<T> of(T value) {
+      return new Outcome<>(false, value, 0);
+    }
+
+    private static <T> Outcome<T> retryAfter(long backoffMillis) {
+      return new Outcome<>(true, null, backoffMillis);
+    }
   }
 }
\ No newline at end of file
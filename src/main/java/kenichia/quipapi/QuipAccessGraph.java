@@ -0,0 +1,424 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * In-memory graph of who can see which folders and threads.
+ * <p>
+ * Users, folders and threads are interned to dense int ids, and every edge
+ * is kept in both directions as sorted int arrays, so reverse questions such
+ * as "which threads can this user see" are answered by walking arrays and
+ * bitsets rather than by calling the API. Access to a folder is inherited by
+ * its sub folders and by the threads inside them.
+ * <p>
+ * The graph is a {@link QuipCrawlVisitor}, so it is normally filled by a
+ * {@link QuipFolderCrawler} and then kept current by calling
+ * {@link #update(QuipFolder)}, {@link #update(QuipThread)} and the remove
+ * methods as changes are observed.
+ */
+public class QuipAccessGraph implements QuipCrawlVisitor {
+
+  private final Interner _users = new Interner();
+  private final Interner _folders = new Interner();
+  private final Interner _threads = new Interner();
+
+  // folder -> member user
+  private final Relation _folderMembers = new Relation();
+  // folder -> sub folder
+  private final Relation _folderChildren = new Relation();
+  // folder -> thread
+  private final Relation _folderThreads = new Relation();
+  // thread -> directly shared user
+  private final Relation _threadUsers = new Relation();
+
+  // ============================================
+  // Crawl
+  // ============================================
+
+  @Override
+  public void onFolder(QuipFolder folder, int depth) {
+    update(folder);
+  }
+
+  @Override
+  public void onThread(QuipThread thread, int depth) {
+    update(thread);
+  }
+
+  // ============================================
+  // Update
+  // ============================================
+
+  /**
+   * Replaces the members and children recorded for the folder.
+   */
+  public synchronized void update(QuipFolder folder) {
+    int node = _folders._intern(folder.getId());
+    _folderMembers._replace(node, _users._internAll(folder.getMemberIds()));
+    if (folder._getJsonArray("children") != null) {
+      List<String> folderIds = new ArrayList<>();
+      List<String> threadIds = new ArrayList<>();
+      for (QuipFolder.Node child : folder.getChildren())
+        (child.isFolder() ? folderIds : threadIds).add(child.getId());
+      _folderChildren._replace(node,
+          _folders._internAll(folderIds.toArray(String[]::new)));
+      _folderThreads._replace(node,
+          _threads._internAll(threadIds.toArray(String[]::new)));
+    }
+    String parentId = folder.getParentId();
+    if (parentId != null && !parentId.isEmpty())
+      _folderChildren._add(_folders._intern(parentId), node);
+  }
+
+  /**
+   * Replaces the users and folders the thread is directly shared with.
+   */
+  public synchronized void update(QuipThread thread) {
+    int node = _threads._intern(thread.getId());
+    _threadUsers._replace(node, _users._internAll(thread.getUserIds()));
+    _folderThreads._replaceReverse(node,
+        _folders._internAll(thread.getSharedFolderIds()));
+  }
+
+  public synchronized void removeFolder(String folderId) {
+    int node = _folders._find(folderId);
+    if (node < 0)
+      return;
+    _folderMembers._replace(node, Relation.EMPTY);
+    _folderChildren._replace(node, Relation.EMPTY);
+    _folderChildren._replaceReverse(node, Relation.EMPTY);
+    _folderThreads._replace(node, Relation.EMPTY);
+  }
+
+  public synchronized void removeThread(String threadId) {
+    int node = _threads._find(threadId);
+    if (node < 0)
+      return;
+    _threadUsers._replace(node, Relation.EMPTY);
+    _folderThreads._replaceReverse(node, Relation.EMPTY);
+  }
+
+  public synchronized void clear() {
+    _users._clear();
+    _folders._clear();
+    _threads._clear();
+    _folderMembers._clear();
+    _folderChildren._clear();
+    _folderThreads._clear();
+    _threadUsers._clear();
+  }
+
+  // ============================================
+  // Query
+  // ============================================
+
+  public synchronized int getUserCount() {
+    return _users._size();
+  }
+
+  public synchronized int getFolderCount() {
+    return _folders._size();
+  }
+
+  public synchronized int getThreadCount() {
+    return _threads._size();
+  }
+
+  /**
+   * @return - folders the user is a member of, and all of their sub folders.
+   */
+  public synchronized String[] getFolderIdsForUser(String userId) {
+    return _folders._names(_foldersOf(_users._find(userId)));
+  }
+
+  /**
+   * @return - threads shared with the user directly or through a folder.
+   */
+  public synchronized String[] getThreadIdsForUser(String userId) {
+    int user = _users._find(userId);
+    BitSet threads = new BitSet();
+    if (user >= 0)
+      _threadUsers._forEachReverse(user, threads::set);
+    _foldersOf(user).stream()
+        .forEach(folder -> _folderThreads._forEach(folder, threads::set));
+    return _threads._names(threads);
+  }
+
+  /**
+   * @return - members of the folder and of all of its parent folders.
+   */
+  public synchronized String[] getUserIdsForFolder(String folderId) {
+    BitSet users = new BitSet();
+    int folder = _folders._find(folderId);
+    if (folder >= 0)
+      _membersOfAncestors(_single(folder), users);
+    return _users._names(users);
+  }
+
+  /**
+   * @return - users the thread is shared with directly or through a folder.
+   */
+  public synchronized String[] getUserIdsForThread(String threadId) {
+    BitSet users = new BitSet();
+    int thread = _threads._find(threadId);
+    if (thread >= 0) {
+      _threadUsers._forEach(thread, users::set);
+      BitSet folders = new BitSet();
+      _folderThreads._forEachReverse(thread, folders::set);
+      _membersOfAncestors(folders, users);
+    }
+    return _users._names(users);
+  }
+
+  /**
+   * @return - whether the user can see the thread.
+   */
+  public synchronized boolean canAccess(String userId, String threadId) {
+    int user = _users._find(userId);
+    int thread = _threads._find(threadId);
+    if (user < 0 || thread < 0)
+      return false;
+    if (_threadUsers._contains(thread, user))
+      return true;
+    BitSet folders = new BitSet();
+    _folderThreads._forEachReverse(thread, folders::set);
+    _closure(folders, _folderChildren, true);
+    for (int f = folders.nextSetBit(0); f >= 0; f = folders.nextSetBit(f + 1))
+      if (_folderMembers._contains(f, user))
+        return true;
+    return false;
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private BitSet _foldersOf(int user) {
+    BitSet folders = new BitSet();
+    if (user < 0)
+      return folders;
+    _folderMembers._forEachReverse(user, folders::set);
+    _closure(folders, _folderChildren, false);
+    return folders;
+  }
+
+  private void _membersOfAncestors(BitSet folders, BitSet users) {
+    _closure(folders, _folderChildren, true);
+    folders.stream()
+        .forEach(folder -> _folderMembers._forEach(folder, users::set));
+  }
+
+  /**
+   * Extends {@code nodes} with everything reachable through the relation,
+   * guarding against cycles with the set itself.
+   */
+  private static void _closure(BitSet nodes, Relation relation,
+      boolean isReverse) {
+    int[] queue = nodes.stream().toArray();
+    int size = queue.length;
+    for (int head = 0; head < size; head++) {
+      int[] row = isReverse ? relation._reverse._row(queue[head])
+          : relation._forward._row(queue[head]);
+      for (int i = 1; i <= row[0]; i++) {
+        int next = row[i];
+        if (nodes.get(next))
+          continue;
+        nodes.set(next);
+        if (size == queue.length)
+          queue = Arrays.copyOf(queue, Math.max(16, size * 2));
+        queue[size++] = next;
+      }
+    }
+  }
+
+  private static BitSet _single(int node) {
+    BitSet set = new BitSet();
+    set.set(node);
+    return set;
+  }
+
+  /**
+   * Maps string ids to dense ints starting at zero.
+   */
+  private static class Interner {
+    private final Map<String, Integer> _ids = new HashMap<>();
+    private final List<String> _names = new ArrayList<>();
+
+    int _intern(String name) {
+      Integer id = _ids.get(name);
+      if (id != null)
+        return id;
+      _ids.put(name, _names.size());
+      _names.add(name);
+      return _names.size() - 1;
+    }
+
+    int[] _internAll(String[] names) {
+      if (names == null)
+        return Relation.EMPTY;
+      int[] ids = new int[names.length];
+      for (int i = 0; i < names.length; i++)
+        ids[i] = _intern(names[i]);
+      return ids;
+    }
+
+    int _find(String name) {
+      Integer id = (name == null) ? null : _ids.get(name);
+      return (id == null) ? -1 : id;
+    }
+
+    String[] _names(BitSet ids) {
+      return ids.stream().mapToObj(_names::get).toArray(String[]::new);
+    }
+
+    int _size() {
+      return _names.size();
+    }
+
+    void _clear() {
+      _ids.clear();
+      _names.clear();
+    }
+  }
+
+  /**
+   * Edges kept in both directions.
+   */
+  private static class Relation {
+    static final int[] EMPTY = new int[0];
+
+    final Adjacency _forward = new Adjacency();
+    final Adjacency _reverse = new Adjacency();
+
+    void _replace(int from, int[] targets) {
+      _replace(_forward, _reverse, from, targets);
+    }
+
+    void _replaceReverse(int to, int[] sources) {
+      _replace(_reverse, _forward, to, sources);
+    }
+
+    void _add(int from, int to) {
+      _forward._add(from, to);
+      _reverse._add(to, from);
+    }
+
+    boolean _contains(int from, int to) {
+      return _forward._contains(from, to);
+    }
+
+    void _forEach(int from, IntConsumer action) {
+      _forward._forEach(from, action);
+    }
+
+    void _forEachReverse(int to, IntConsumer action) {
+      _reverse._forEach(to, action);
+    }
+
+    void _clear() {
+      _forward._clear();
+      _reverse._clear();
+    }
+
+    private static void _replace(Adjacency side, Adjacency other, int node,
+        int[] targets) {
+      int[] sorted = Arrays.stream(targets).sorted().distinct().toArray();
+      int[] old = side._row(node);
+      for (int i = 1; i <= old[0]; i++)
+        if (Arrays.binarySearch(sorted, old[i]) < 0)
+          other._remove(old[i], node);
+      for (int target : sorted)
+        other._add(target, node);
+      side._set(node, sorted);
+    }
+  }
+
+  /**
+   * One sorted int array per node; element 0 holds the number of edges.
+   */
+  private static class Adjacency {
+    private static final int[] NONE = { 0 };
+
+    private int[][] _rows = new int[16][];
+
+    int[] _row(int node) {
+      if (node >= _rows.length || _rows[node] == null)
+        return NONE;
+      return _rows[node];
+    }
+
+    void _set(int node, int[] sorted) {
+      _ensure(node);
+      int[] row = new int[sorted.length + 1];
+      row[0] = sorted.length;
+      System.arraycopy(sorted, 0, row, 1, sorted.length);
+      _rows[node] = row;
+    }
+
+    void _add(int node, int target) {
+      _ensure(node);
+      int[] row = _row(node);
+      int index = Arrays.binarySearch(row, 1, row[0] + 1, target);
+      if (index >= 0)
+        return;
+      index = -index - 1;
+      if (row[0] + 1 == row.length)
+        row = Arrays.copyOf(row, Math.max(4, row.length * 2));
+      System.arraycopy(row, index, row, index + 1, row[0] + 1 - index);
+      row[index] = target;
+      row[0]++;
+      _rows[node] = row;
+    }
+
+    void _remove(int node, int target) {
+      int[] row = _row(node);
+      int index = Arrays.binarySearch(row, 1, row[0] + 1, target);
+      if (index < 0)
+        return;
+      System.arraycopy(row, index + 1, row, index, row[0] - index);
+      row[0]--;
+    }
+
+    boolean _contains(int node, int target) {
+      int[] row = _row(node);
+      return Arrays.binarySearch(row, 1, row[0] + 1, target) >= 0;
+    }
+
+    void _forEach(int node, IntConsumer action) {
+      int[] row = _row(node);
+      for (int i = 1; i <= row[0]; i++)
+        action.accept(row[i]);
+    }
+
+    void _clear() {
+      _rows = new int[16][];
+    }
+
+    private void _ensure(int node) {
+      if (node >= _rows.length)
+        _rows = Arrays.copyOf(_rows,
+            Math.max(node + 1, _rows.length * 2));
+    }
+  }
+}
\ No newline at end of file
@@ -17,6 +17,10 @@ package kenichia.quipapi;
 
 import com.google.gson.JsonObject;
 
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
 public class QuipBlob extends QuipJsonObject {
 
     // ============================================
@@ -27,6 +31,10 @@ public class QuipBlob extends QuipJsonObject {
         super(json);
     }
 
+    protected QuipBlob(QuipClient client, JsonObject json) {
+        super(client, json);
+    }
+
     /**
      * Method to get images and attachments from a thread or thread messages.
      *
@@ -37,8 +45,62 @@ public class QuipBlob extends QuipJsonObject {
      *                   thread id is invalid.
      */
     public static byte[] getBlob(String threadId, String blobId) throws Exception {
-        return _getToByteArray(
-                QuipAccess.ENDPOINT + "/blob/" + threadId + "/" + blobId);
+        return getBlob(QuipClient._getDefault(), threadId, blobId);
+    }
+
+    public static byte[] getBlob(QuipClient client, String threadId,
+                                 String blobId) throws Exception {
+        return _getToByteArray(client, _blobUri(threadId, blobId));
+    }
+
+    /**
+     * Streams a blob to {@code out} as it arrives, so large attachments never
+     * have to fit in memory.
+     *
+     * @param threadId - thread id.
+     * @param blobId   - id of the blob to be fetched.
+     * @param out      - destination, left open.
+     * @return - number of bytes written.
+     * @throws Exception - if the blob not exit on the thread or if the
+     *                   thread id is invalid.
+     */
+    public static long getBlob(String threadId, String blobId,
+                               OutputStream out) throws Exception {
+        return getBlob(QuipClient._getDefault(), threadId, blobId, out);
+    }
+
+    public static long getBlob(QuipClient client, String threadId,
+                               String blobId, OutputStream out) throws Exception {
+        return _getToOutputStream(client, _blobUri(threadId, blobId), out);
+    }
+
+    /**
+     * Writes a blob to {@code path}, replacing any existing file. The body is
+     * transferred by the file channel directly from the connection.
+     */
+    public static long getBlob(String threadId, String blobId, Path path)
+            throws Exception {
+        return getBlob(QuipClient._getDefault(), threadId, blobId, path);
+    }
+
+    public static long getBlob(QuipClient client, String threadId,
+                               String blobId, Path path) throws Exception {
+        return _getToPath(client, _blobUri(threadId, blobId), path);
+    }
+
+    public static long getBlob(String threadId, String blobId,
+                               WritableByteChannel channel) throws Exception {
+        return getBlob(QuipClient._getDefault(), threadId, blobId, channel);
+    }
+
+    public static long getBlob(QuipClient client, String threadId,
+                               String blobId, WritableByteChannel channel)
+            throws Exception {
+        return _getToChannel(client, _blobUri(threadId, blobId), channel);
+    }
+
+    private static String _blobUri(String threadId, String blobId) {
+        return QuipAccess.ENDPOINT + "/blob/" + threadId + "/" + blobId;
     }
 
     // ============================================
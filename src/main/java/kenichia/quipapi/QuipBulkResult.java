@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Outcome of a chunked bulk fetch. Results are kept in the order the ids were
+ * requested; ids that could not be fetched are reported in
+ * {@link #getFailures()} instead of failing the whole call.
+ *
+ * @param <T> - entity type.
+ */
+public class QuipBulkResult<T> {
+
+  private final List<String> _ids;
+  private final List<T> _results;
+  private final Map<String, Throwable> _failures;
+  // id -> first position in _ids
+  private final Map<String, Integer> _indexes;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  QuipBulkResult(String[] ids, Map<String, T> found,
+      Map<String, Throwable> failures) {
+    List<String> idList = new ArrayList<>(ids.length);
+    List<T> results = new ArrayList<>(ids.length);
+    Map<String, Throwable> orderedFailures = new LinkedHashMap<>();
+    Map<String, Integer> indexes = new HashMap<>();
+    for (String id : ids) {
+      indexes.putIfAbsent(id, idList.size());
+      idList.add(id);
+      results.add(found.get(id));
+      if (failures.containsKey(id))
+        orderedFailures.put(id, failures.get(id));
+    }
+    _ids = Collections.unmodifiableList(idList);
+    _results = Collections.unmodifiableList(results);
+    _failures = Collections.unmodifiableMap(orderedFailures);
+    _indexes = indexes;
+  }
+
+  // ============================================
+  // Properties
+  // ============================================
+
+  public List<String> getIds() {
+    return _ids;
+  }
+
+  /**
+   * @return - one entry per requested id, in input order; null where the id
+   *         failed.
+   */
+  public List<T> getResults() {
+    return _results;
+  }
+
+  /**
+   * @return - fetched entities in input order, without gaps.
+   */
+  public List<T> getSucceeded() {
+    return _results.stream().filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * @return - cause of failure keyed by id, in input order.
+   */
+  public Map<String, Throwable> getFailures() {
+    return _failures;
+  }
+
+  public boolean hasFailures() {
+    return !_failures.isEmpty();
+  }
+
+  public T get(String id) {
+    Integer index = _indexes.get(id);
+    return (index == null) ? null : _results.get(index);
+  }
+}
\ No newline at end of file
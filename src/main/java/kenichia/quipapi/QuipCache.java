@@ -0,0 +1,315 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of thread, user, folder and message list payloads owned by
+ * a {@link QuipClient}.
+ * <p>
+ * Entries expire after a fixed TTL and the least recently used ones are
+ * evicted once the total weight (the approximate size of the cached JSON in
+ * characters) exceeds the configured maximum. A payload whose {@code updated_usec} is
+ * older than the cached one never replaces it, so a slow response cannot
+ * overwrite a newer edit.
+ */
+public class QuipCache {
+
+  static final String THREAD = "thread";
+  static final String USER = "user";
+  static final String FOLDER = "folder";
+  static final String MESSAGES = "messages";
+
+  private final long _ttlNanos;
+  private final long _maxWeight;
+  private final AtomicLong _hitCount = new AtomicLong();
+  private final AtomicLong _missCount = new AtomicLong();
+  private final AtomicLong _evictionCount = new AtomicLong();
+
+  // guarded by this
+  private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>(
+      16, 0.75f, true);
+  private final Map<String, String> _aliases = new HashMap<>();
+  private long _weight;
+
+  private static class Entry {
+    private final JsonObject _json;
+    private final long _weight;
+    private final long _updatedUsec;
+    private final long _expiresAtNanos;
+    // keys of the aliases resolving to this entry, or null
+    private List<String> _aliasKeys;
+
+    private Entry(JsonObject json, long weight, long updatedUsec,
+        long expiresAtNanos) {
+      _json = json;
+      _weight = weight;
+      _updatedUsec = updatedUsec;
+      _expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  QuipCache(Duration ttl, long maxWeight) {
+    Objects.requireNonNull(ttl);
+    if (ttl.isNegative() || ttl.isZero())
+      throw new IllegalArgumentException("ttl must be positive: " + ttl);
+    if (maxWeight <= 0)
+      throw new IllegalArgumentException(
+          "maxWeight must be positive: " + maxWeight);
+    _ttlNanos = ttl.toNanos();
+    _maxWeight = maxWeight;
+  }
+
+  // ============================================
+  // Statistics
+  // ============================================
+
+  public long getHitCount() {
+    return _hitCount.get();
+  }
+
+  public long getMissCount() {
+    return _missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return _evictionCount.get();
+  }
+
+  public double getHitRate() {
+    long hits = _hitCount.get();
+    long total = hits + _missCount.get();
+    return (total == 0) ? 0.0 : (double) hits / total;
+  }
+
+  public synchronized int size() {
+    return _entries.size();
+  }
+
+  public synchronized long getWeight() {
+    return _weight;
+  }
+
+  // ============================================
+  // Invalidation
+  // ============================================
+
+  public void invalidateThread(String threadId) {
+    _invalidate(THREAD, threadId);
+  }
+
+  public void invalidateUser(String userId) {
+    _invalidate(USER, userId);
+  }
+
+  public void invalidateFolder(String folderId) {
+    _invalidate(FOLDER, folderId);
+  }
+
+  /**
+   * Drops every cached message list of the thread, whatever the query.
+   */
+  public synchronized void invalidateMessages(String threadId) {
+    String prefix = _key(MESSAGES, threadId + "?");
+    Iterator<Map.Entry<String, Entry>> entries = _entries.entrySet()
+        .iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, Entry> entry = entries.next();
+      if (entry.getKey().startsWith(prefix)) {
+        entries.remove();
+        _weight -= entry.getValue()._weight;
+        _removeAliases(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    _entries.clear();
+    _aliases.clear();
+    _weight = 0;
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  /**
+   * @return - the cached payload, or null if it is missing or expired.
+   */
+  synchronized JsonObject _get(String type, String id) {
+    String key = _resolve(_key(type, id));
+    Entry entry = _entries.get(key);
+    if (entry != null && entry._expiresAtNanos - System.nanoTime() <= 0) {
+      _remove(key);
+      entry = null;
+    }
+    if (entry == null) {
+      _missCount.incrementAndGet();
+      return null;
+    }
+    _hitCount.incrementAndGet();
+    return entry._json;
+  }
+
+  /**
+   * @param requestedId - id the payload was requested by, e.g. a secret path;
+   *                    remembered as an alias of {@code id}.
+   * @param id          - canonical id of the entity.
+   * @param updatedUsec - last modification of the payload, or null if the
+   *                    entity does not report one.
+   */
+  synchronized void _put(String type, String requestedId, String id,
+      JsonObject json, Instant updatedUsec) {
+    String key = _key(type, id);
+    String aliasKey = (requestedId == null || requestedId.equals(id)) ? null
+        : _key(type, requestedId);
+    long usec = (updatedUsec == null) ? -1
+        : updatedUsec.getEpochSecond() * 1000000 + updatedUsec.getNano() / 1000;
+    long now = System.nanoTime();
+    Entry current = _entries.get(key);
+    // Re-putting a payload served from the cache must not extend its TTL
+    if (current != null && current._expiresAtNanos - now > 0
+        && (current._json == json || current._updatedUsec > usec)) {
+      _addAlias(aliasKey, key, current);
+      return;
+    }
+    Entry entry = new Entry(json, _weigh(json), usec,
+        now + _ttlNanos);
+    if (current != null) {
+      _entries.remove(key);
+      _weight -= current._weight;
+      entry._aliasKeys = current._aliasKeys;
+    }
+    _entries.put(key, entry);
+    _weight += entry._weight;
+    _addAlias(aliasKey, key, entry);
+    Iterator<Map.Entry<String, Entry>> eldest = _entries.entrySet()
+        .iterator();
+    while (_weight > _maxWeight && eldest.hasNext()) {
+      Map.Entry<String, Entry> evicted = eldest.next();
+      eldest.remove();
+      _weight -= evicted.getValue()._weight;
+      _removeAliases(evicted.getKey(), evicted.getValue());
+      _evictionCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Drops the cached payload unless it is at least as new as
+   * {@code updatedUsec}.
+   */
+  synchronized void _invalidateIfOlder(String type, String id,
+      Instant updatedUsec) {
+    String key = _key(type, id);
+    Entry entry = _entries.get(key);
+    long usec = updatedUsec.getEpochSecond() * 1000000
+        + updatedUsec.getNano() / 1000;
+    if (entry != null && entry._updatedUsec < usec)
+      _remove(key);
+  }
+
+  synchronized void _invalidate(String type, String id) {
+    String key = _key(type, id);
+    _remove(_resolve(key));
+    // Folders are cached once per include_chats variant
+    _remove(key);
+    _remove(key + "?include_chats");
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private static String _key(String type, String id) {
+    return type + "/" + id;
+  }
+
+  /**
+   * Approximates the length of the serialized JSON from the lengths of its
+   * keys and strings, without serializing it.
+   */
+  private static long _weigh(JsonElement element) {
+    if (element.isJsonObject()) {
+      long weight = 2;
+      for (Map.Entry<String, JsonElement> member : element.getAsJsonObject()
+          .entrySet())
+        weight += member.getKey().length() + 4 + _weigh(member.getValue());
+      return weight;
+    }
+    if (element.isJsonArray()) {
+      long weight = 2;
+      for (JsonElement item : (JsonArray) element)
+        weight += _weigh(item) + 1;
+      return weight;
+    }
+    if (element.isJsonPrimitive()) {
+      JsonPrimitive primitive = element.getAsJsonPrimitive();
+      return primitive.isString() ? primitive.getAsString().length() + 2 : 8;
+    }
+    return 4;
+  }
+
+  private String _resolve(String key) {
+    return _aliases.getOrDefault(key, key);
+  }
+
+  private void _remove(String key) {
+    Entry entry = _entries.remove(key);
+    if (entry != null) {
+      _weight -= entry._weight;
+      _removeAliases(key, entry);
+    }
+  }
+
+  private void _addAlias(String aliasKey, String key, Entry entry) {
+    if (aliasKey == null)
+      return;
+    _aliases.put(aliasKey, key);
+    if (entry._aliasKeys == null)
+      entry._aliasKeys = new ArrayList<>(1);
+    if (!entry._aliasKeys.contains(aliasKey))
+      entry._aliasKeys.add(aliasKey);
+  }
+
+  /**
+   * Drops the aliases of an entry that left the cache, unless they have
+   * been pointed at another entry since.
+   */
+  private void _removeAliases(String key, Entry entry) {
+    if (entry._aliasKeys != null)
+      for (String aliasKey : entry._aliasKeys)
+        _aliases.remove(aliasKey, key);
+  }
+}
\ No newline at end of file
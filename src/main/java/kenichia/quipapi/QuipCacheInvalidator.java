@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import com.google.gson.JsonObject;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Keeps a client's {@link QuipCache} and {@link QuipSnapshotStore} in step
+ * with the websocket feed.
+ * <p>
+ * Pass it to {@link QuipWebSocket#open(QuipWebSocketEvent)}; every message
+ * event evicts the affected thread, its author and the thread's cached
+ * message lists, then forwards the event to the wrapped listener. With
+ * refresh enabled the thread is refetched in the background so the next
+ * reader finds it warm. A cached thread that is already at least as new as
+ * the event is kept.
+ */
+public class QuipCacheInvalidator implements QuipWebSocketEvent {
+
+  private final QuipClient _client;
+  private final QuipWebSocketEvent _delegate;
+  private final boolean _isRefreshEnabled;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  /**
+   * @param client           - client whose cache is kept up to date.
+   * @param delegate         - listener the events are forwarded to, or null.
+   * @param isRefreshEnabled - refetch evicted threads in the background.
+   */
+  public QuipCacheInvalidator(QuipClient client, QuipWebSocketEvent delegate,
+      boolean isRefreshEnabled) {
+    _client = Objects.requireNonNull(client);
+    _delegate = delegate;
+    _isRefreshEnabled = isRefreshEnabled;
+  }
+
+  // ============================================
+  // QuipWebSocketEvent
+  // ============================================
+
+  @Override
+  public void onMessage(QuipMessage message, QuipUser user,
+      QuipThread thread) {
+    String threadId = _getId(thread);
+    if (threadId != null) {
+      Instant updatedUsec = _getUpdatedUsec(thread);
+      if (updatedUsec != null)
+        _client._invalidateCachedIfOlder(QuipCache.THREAD, threadId,
+            updatedUsec);
+      else
+        _client._invalidateCached(QuipCache.THREAD, threadId);
+      QuipCache cache = _client.getCache();
+      if (cache != null)
+        cache.invalidateMessages(threadId);
+      if (_isRefreshEnabled)
+        QuipThread.getThreadAsync(_client, threadId).exceptionally(e -> null);
+    }
+    if (user != null && user.getId() != null)
+      _client._invalidateCached(QuipCache.USER, user.getId());
+    if (_delegate != null)
+      _delegate.onMessage(message, user, thread);
+  }
+
+  @Override
+  public void onHeartbeat() {
+    if (_delegate != null)
+      _delegate.onHeartbeat();
+  }
+
+  @Override
+  public void onAlive(String message) {
+    if (_delegate != null)
+      _delegate.onAlive(message);
+  }
+
+  @Override
+  public void onError(String debug) {
+    if (_delegate != null)
+      _delegate.onError(debug);
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  // The feed sends the bare thread object, not the {"thread": ...} envelope
+  // returned by /threads/, so look in both places.
+  private static JsonObject _getThreadObject(QuipThread thread) {
+    if (thread == null)
+      return null;
+    JsonObject envelope = thread._getJsonObject("thread");
+    return (envelope != null) ? envelope : thread._getJsonObject();
+  }
+
+  private static String _getId(QuipThread thread) {
+    JsonObject object = _getThreadObject(thread);
+    return (object == null || !object.has("id")) ? null
+        : object.get("id").getAsString();
+  }
+
+  private static Instant _getUpdatedUsec(QuipThread thread) {
+    JsonObject object = _getThreadObject(thread);
+    if (object == null || !object.has("updated_usec"))
+      return null;
+    long usec = object.get("updated_usec").getAsLong();
+    return Instant.ofEpochSecond(usec / 1000000, (usec % 1000000) * 1000);
+  }
+}
\ No newline at end of file
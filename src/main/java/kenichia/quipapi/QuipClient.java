@@ -15,20 +15,306 @@
  */
 package kenichia.quipapi;
 
+import com.google.gson.JsonObject;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
-public class QuipClient extends QuipAccess {
+public class QuipClient extends QuipAccess implements Closeable {
 
-  private static QuipClient _instance = new QuipClient();
-  private String _accessToken;
-  private boolean _isDebugEnabled = false;
+  private static QuipClient _instance = new QuipClient(new Builder());
+  private volatile String _accessToken;
+  private volatile QuipLogger _logger;
+  private volatile QuipRetryPolicy _retryPolicy;
+  private final Duration _socketTimeout;
+  private final CloseableHttpClient _closeableHttpClient;
+  private final Executor _executor;
+  private final HttpClient _httpClient;
+  private final QuipRateLimit _rateLimit = new QuipRateLimit();
+  private final QuipRateLimiter _rateLimiter;
+  private final int _bulkChunkSize;
+  private final int _bulkParallelism;
+  private final QuipDataLoader _userLoader;
+  private final QuipDataLoader _threadLoader;
+  private final QuipCache _cache;
+  private final QuipSnapshotStore _snapshotStore;
+  private final long _snapshotMaxAgeMillis;
+  private ExecutorService _workers;
+
+  // ============================================
+  // Builder
+  // ============================================
+
+  public static class Builder {
+    private String _accessToken;
+    private int _maxConnections = 20;
+    private Duration _connectTimeout;
+    private Duration _socketTimeout;
+    private QuipRetryPolicy _retryPolicy = QuipRetryPolicy.DEFAULT;
+    private QuipLogger _logger;
+    private boolean _isRateLimiterEnabled = true;
+    private int _rateLimiterBurst = 10;
+    private int _bulkChunkSize = 100;
+    private int _bulkParallelism = 4;
+    private Duration _batchWindow;
+    private Duration _cacheTtl;
+    private long _cacheMaxWeight;
+    private QuipSnapshotStore _snapshotStore;
+    private Duration _snapshotMaxAge;
+
+    private Builder() {
+    }
+
+    public Builder accessToken(String accessToken) {
+      _accessToken = Objects.requireNonNull(accessToken);
+      return this;
+    }
+
+    public Builder maxConnections(int maxConnections) {
+      if (maxConnections <= 0)
+        throw new IllegalArgumentException(
+            "maxConnections must be positive: " + maxConnections);
+      _maxConnections = maxConnections;
+      return this;
+    }
+
+    public Builder connectTimeout(Duration connectTimeout) {
+      _connectTimeout = connectTimeout;
+      return this;
+    }
+
+    public Builder socketTimeout(Duration socketTimeout) {
+      _socketTimeout = socketTimeout;
+      return this;
+    }
+
+    public Builder maxRetries(int maxRetries) {
+      _retryPolicy = _retryPolicy.withMaxRetries(maxRetries);
+      return this;
+    }
+
+    public Builder retryPolicy(QuipRetryPolicy retryPolicy) {
+      _retryPolicy = Objects.requireNonNull(retryPolicy);
+      return this;
+    }
+
+    /**
+     * Shorthand for {@code logger(QuipLogger.STDOUT)} or {@code logger(null)}.
+     */
+    public Builder enableDebug(boolean isEnabled) {
+      _logger = isEnabled ? QuipLogger.STDOUT : null;
+      return this;
+    }
+
+    /**
+     * @param logger - receives debug output, or null to turn it off.
+     */
+    public Builder logger(QuipLogger logger) {
+      _logger = logger;
+      return this;
+    }
+
+    public Builder enableRateLimiter(boolean isEnabled) {
+      _isRateLimiterEnabled = isEnabled;
+      return this;
+    }
+
+    public Builder rateLimiterBurst(int burst) {
+      if (burst <= 0)
+        throw new IllegalArgumentException(
+            "burst must be positive: " + burst);
+      _rateLimiterBurst = burst;
+      return this;
+    }
+
+    /**
+     * @param chunkSize - maximum number of ids sent in one bulk request.
+     */
+    public Builder bulkChunkSize(int chunkSize) {
+      if (chunkSize <= 0)
+        throw new IllegalArgumentException(
+            "chunkSize must be positive: " + chunkSize);
+      _bulkChunkSize = chunkSize;
+      return this;
+    }
+
+    /**
+     * @param parallelism - maximum number of bulk chunks in flight at once.
+     */
+    public Builder bulkParallelism(int parallelism) {
+      if (parallelism <= 0)
+        throw new IllegalArgumentException(
+            "parallelism must be positive: " + parallelism);
+      _bulkParallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Coalesces {@code getUser} and {@code getThread} calls made within
+     * {@code window} of each other into one bulk request, and lets concurrent
+     * lookups of the same id share a single request.
+     *
+     * @param window - batching window, or null to send every lookup on its
+     *               own (the default).
+     */
+    public Builder batchWindow(Duration window) {
+      if (window != null && window.isNegative())
+        throw new IllegalArgumentException(
+            "window must not be negative: " + window);
+      _batchWindow = window;
+      return this;
+    }
+
+    /**
+     * Caches thread, user and folder payloads fetched by {@code getThread},
+     * {@code getUser}, {@code getFolder} and {@code reload()}.
+     *
+     * @param ttl       - how long an entry is served without refetching.
+     * @param maxWeight - upper bound on the cached JSON, in characters.
+     */
+    public Builder cache(Duration ttl, long maxWeight) {
+      _cacheTtl = Objects.requireNonNull(ttl);
+      _cacheMaxWeight = maxWeight;
+      return this;
+    }
+
+    /**
+     * Backs the cache with a persistent store so a restarted process can
+     * serve thread, user and folder payloads without refetching them.
+     *
+     * @param store  - store to read from and write to; closed by the caller.
+     * @param maxAge - how long a stored payload is served after it was last
+     *               confirmed against the server.
+     */
+    public Builder snapshotStore(QuipSnapshotStore store, Duration maxAge) {
+      _snapshotStore = Objects.requireNonNull(store);
+      _snapshotMaxAge = Objects.requireNonNull(maxAge);
+      return this;
+    }
+
+    public QuipClient build() {
+      Objects.requireNonNull(_accessToken, "accessToken");
+      return new QuipClient(this);
+    }
+  }
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  private QuipClient(Builder builder) {
+    _accessToken = builder._accessToken;
+    _logger = builder._logger;
+    _retryPolicy = builder._retryPolicy;
+    _socketTimeout = builder._socketTimeout;
+    _rateLimiter = new QuipRateLimiter(builder._isRateLimiterEnabled,
+        builder._rateLimiterBurst);
+    _bulkChunkSize = builder._bulkChunkSize;
+    _bulkParallelism = builder._bulkParallelism;
+    _cache = (builder._cacheTtl == null) ? null
+        : new QuipCache(builder._cacheTtl, builder._cacheMaxWeight);
+    _snapshotStore = builder._snapshotStore;
+    _snapshotMaxAgeMillis = (builder._snapshotMaxAge == null) ? 0
+        : builder._snapshotMaxAge.toMillis();
+    if (builder._batchWindow != null) {
+      _userLoader = new QuipDataLoader(this, "/users/", builder._batchWindow,
+          _bulkChunkSize);
+      _threadLoader = new QuipDataLoader(this, "/threads/",
+          builder._batchWindow, _bulkChunkSize);
+    } else {
+      _userLoader = null;
+      _threadLoader = null;
+    }
+
+    PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+    manager.setMaxTotal(builder._maxConnections);
+    manager.setDefaultMaxPerRoute(builder._maxConnections);
+    RequestConfig.Builder config = RequestConfig.custom()
+        .setCookieSpec(CookieSpecs.STANDARD);
+    if (builder._connectTimeout != null)
+      config.setConnectTimeout((int) builder._connectTimeout.toMillis());
+    if (builder._socketTimeout != null)
+      config.setSocketTimeout((int) builder._socketTimeout.toMillis());
+    _closeableHttpClient = HttpClients.custom().setConnectionManager(manager)
+        .setDefaultRequestConfig(config.build()).build();
+    _executor = Executor.newInstance(_closeableHttpClient);
+
+    HttpClient.Builder httpClient = HttpClient.newBuilder()
+        .followRedirects(HttpClient.Redirect.NORMAL);
+    if (builder._connectTimeout != null)
+      httpClient.connectTimeout(builder._connectTimeout);
+    _httpClient = httpClient.build();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  // ============================================
+  // Instance
+  // ============================================
+
+  public QuipRateLimit getRateLimit() {
+    return _rateLimit;
+  }
+
+  public QuipRateLimiter getRateLimiter() {
+    return _rateLimiter;
+  }
+
+  /**
+   * @return - the entity cache, or null if none was configured.
+   */
+  public QuipCache getCache() {
+    return _cache;
+  }
+
+  /**
+   * @return - the persistent snapshot store, or null if none was configured.
+   */
+  public QuipSnapshotStore getSnapshotStore() {
+    return _snapshotStore;
+  }
+
+  public boolean verifyToken() throws IOException {
+    return (_getToStatusCode(this,
+        QuipAccess.ENDPOINT + "/oauth/verify_token") == 200);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (_userLoader != null)
+      _userLoader._close();
+    if (_threadLoader != null)
+      _threadLoader._close();
+    synchronized (this) {
+      if (_workers != null)
+        _workers.shutdown();
+    }
+    _closeableHttpClient.close();
+    if (_snapshotStore != null)
+      _snapshotStore.flush();
+  }
 
   // ============================================
   // Authentication
@@ -37,7 +323,7 @@ public class QuipClient extends QuipAccess {
   public static void setAccessToken(String accessToken) throws Exception {
     Objects.requireNonNull(accessToken);
     _instance._accessToken = accessToken;
-    if (!_verifyToken())
+    if (!_instance.verifyToken())
       throw new IOException("The access token is invalid.");
   }
 
@@ -68,7 +354,7 @@ public class QuipClient extends QuipAccess {
     params.add(new BasicNameValuePair("client_secret", clientSecret));
     params.add(new BasicNameValuePair("redirect_uri", redirectUri));
     params.add(new BasicNameValuePair("code", authorizationCode));
-    return new QuipToken(_postToJsonObject(
+    return new QuipToken(_postToJsonObject(_instance,
         new URIBuilder(QuipAccess.ENDPOINT + "/oauth/access_token")
             .addParameters(params).build()));
   }
@@ -83,7 +369,7 @@ public class QuipClient extends QuipAccess {
     params.add(new BasicNameValuePair("client_id", clientId));
     params.add(new BasicNameValuePair("client_secret", clientSecret));
     params.add(new BasicNameValuePair("refresh_token", refreshToken));
-    return new QuipToken(_postToJsonObject(
+    return new QuipToken(_postToJsonObject(_instance,
         new URIBuilder(QuipAccess.ENDPOINT + "/oauth/access_token")
             .addParameters(params).build()));
   }
@@ -96,64 +382,233 @@ public class QuipClient extends QuipAccess {
     params.add(new BasicNameValuePair("client_id", clientId));
     params.add(new BasicNameValuePair("client_secret", clientSecret));
     params.add(new BasicNameValuePair("token", _instance._accessToken));
-    _postToJsonObject(new URIBuilder(QuipAccess.ENDPOINT + "/oauth/revoke")
+    _postToJsonObject(_instance,
+        new URIBuilder(QuipAccess.ENDPOINT + "/oauth/revoke")
         .addParameters(params).build());
   }
 
   public static Integer getUserRateLimit() {
-    return QuipAccess.xRateLimitLimit;
+    return _instance._rateLimit.getUserLimit();
   }
 
   public static Long getUserRateReset() {
-    return QuipAccess.xRateLimitReset;
+    return _instance._rateLimit.getUserReset();
   }
 
   public static Integer getUserRateLimitRemaining() {
-    return QuipAccess.xRateLimitRemaining;
+    return _instance._rateLimit.getUserRemaining();
   }
 
   public static Integer getUserRetryAfter() {
-    return QuipAccess.xRateLimitRetryAfter;
+    return _instance._rateLimit.getUserRetryAfter();
   }
 
   public static Integer getCompanyRateLimit() {
-    return QuipAccess.xCompanyRateLimitLimit;
+    return _instance._rateLimit.getCompanyLimit();
   }
 
   public static Long getCompanyRateReset() {
-    return QuipAccess.xCompanyRateLimitReset;
+    return _instance._rateLimit.getCompanyReset();
   }
 
   public static Integer getCompanyRateLimitRemaining() {
-    return QuipAccess.xCompanyRateLimitRemaining;
+    return _instance._rateLimit.getCompanyRemaining();
   }
 
   public static Integer getCompanyRetryAfter() {
-    return QuipAccess.xCompanyRetryAfter;
+    return _instance._rateLimit.getCompanyRetryAfter();
+  }
+
+  public static int getRateLimiterQueueDepth() {
+    return _instance._rateLimiter.getQueueDepth();
   }
 
   public static void enableDebug(boolean isEnabled) {
-    _instance._isDebugEnabled = isEnabled;
+    setLogger(isEnabled ? QuipLogger.STDOUT : null);
+  }
+
+  public static void setLogger(QuipLogger logger) {
+    _instance._logger = logger;
   }
 
   // ============================================
   // Protected
   // ============================================
 
-  protected static String _getBearerToken() {
-    return "Bearer " + _instance._accessToken;
+  protected static QuipClient _getDefault() {
+    return _instance;
+  }
+
+  protected String _getBearerToken() {
+    return "Bearer " + _accessToken;
+  }
+
+  /**
+   * @return - the debug logger, or null when debugging is off.
+   */
+  protected QuipLogger _getLogger() {
+    return _logger;
+  }
+
+  protected void _updateRateLimits(Function<String, String> headers) {
+    _rateLimit._update(headers);
+    _rateLimiter._update(_rateLimit);
+  }
+
+  protected QuipRetryPolicy _getRetryPolicy() {
+    return _retryPolicy;
+  }
+
+  protected void _setRetryPolicy(QuipRetryPolicy retryPolicy) {
+    _retryPolicy = retryPolicy;
+  }
+
+  protected Duration _getSocketTimeout() {
+    return _socketTimeout;
+  }
+
+  protected Executor _getExecutor() {
+    return _executor;
+  }
+
+  protected HttpClient _getHttpClient() {
+    return _httpClient;
+  }
+
+  protected int _getBulkChunkSize() {
+    return _bulkChunkSize;
+  }
+
+  protected int _getBulkParallelism() {
+    return _bulkParallelism;
+  }
+
+  /**
+   * @return - a pool of {@link Builder#bulkParallelism(int)} daemon threads
+   * for blocking calls made on behalf of the caller, created on first use.
+   */
+  protected synchronized ExecutorService _getWorkers() {
+    if (_workers == null) {
+      ThreadPoolExecutor workers = new ThreadPoolExecutor(_bulkParallelism,
+          _bulkParallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+          runnable -> {
+            Thread thread = new Thread(runnable, "quip-worker");
+            thread.setDaemon(true);
+            return thread;
+          });
+      workers.allowCoreThreadTimeOut(true);
+      _workers = workers;
+    }
+    return _workers;
+  }
+
+  /**
+   * Looks a payload up in the cache, then in the snapshot store. Failures of
+   * the store are treated as misses.
+   */
+  protected JsonObject _getCached(String type, String id) {
+    JsonObject json = (_cache == null) ? null : _cache._get(type, id);
+    if (json != null || _snapshotStore == null)
+      return json;
+    try {
+      json = _snapshotStore._get(type, id, _snapshotMaxAgeMillis);
+    } catch (IOException e) {
+      _onSnapshotError(e);
+      return null;
+    }
+    if (json != null && _cache != null)
+      _cache._put(type, null, id, json, null);
+    return json;
+  }
+
+  /**
+   * @return - true if the snapshot store holds a payload that can be
+   *         confirmed by {@link #_revalidateSnapshot}.
+   */
+  protected boolean _isSnapshotRevalidatable(String type, String id) {
+    if (_snapshotStore == null)
+      return false;
+    try {
+      return _snapshotStore._isRevalidatable(type, id);
+    } catch (IOException e) {
+      _onSnapshotError(e);
+      return false;
+    }
   }
 
-  protected static boolean _isDebugEnabled() {
-    return _instance._isDebugEnabled;
+  /**
+   * Serves the stored payload again if the entity is still at
+   * {@code updatedUsec}, as reported by a read that skipped its body.
+   *
+   * @return - the stored payload, or null if it has changed.
+   */
+  protected JsonObject _revalidateSnapshot(String type, String id,
+      Instant updatedUsec) {
+    JsonObject json;
+    try {
+      json = _snapshotStore._revalidate(type, id, updatedUsec);
+    } catch (IOException e) {
+      _onSnapshotError(e);
+      return null;
+    }
+    if (json != null && _cache != null)
+      _cache._put(type, null, id, json, updatedUsec);
+    return json;
+  }
+
+  protected void _putCached(String type, String requestedId, String id,
+      JsonObject json, Instant updatedUsec) {
+    if (_cache != null)
+      _cache._put(type, requestedId, id, json, updatedUsec);
+    if (_snapshotStore != null) {
+      try {
+        _snapshotStore._put(type, id, json, updatedUsec);
+      } catch (IOException e) {
+        _onSnapshotError(e);
+      }
+    }
+  }
+
+  protected void _invalidateCached(String type, String id) {
+    if (_cache != null)
+      _cache._invalidate(type, id);
+    if (_snapshotStore != null) {
+      try {
+        _snapshotStore._invalidate(type, id);
+      } catch (IOException e) {
+        _onSnapshotError(e);
+      }
+    }
+  }
+
+  protected void _invalidateCachedIfOlder(String type, String id,
+      Instant updatedUsec) {
+    if (_cache != null)
+      _cache._invalidateIfOlder(type, id, updatedUsec);
+    if (_snapshotStore != null) {
+      try {
+        _snapshotStore._invalidateIfOlder(type, id, updatedUsec);
+      } catch (IOException e) {
+        _onSnapshotError(e);
+      }
+    }
+  }
+
+  protected QuipDataLoader _getUserLoader() {
+    return _userLoader;
+  }
+
+  protected QuipDataLoader _getThreadLoader() {
+    return _threadLoader;
   }
 
   // ============================================
   // Private
   // ============================================
 
-  private static boolean _verifyToken() throws IOException {
-    return (_getToStatusCode(
-        QuipAccess.ENDPOINT + "/oauth/verify_token") == 200);
+  private void _onSnapshotError(IOException e) {
+    QuipLogger logger = _logger;
+    if (logger != null)
+      logger.debug("Snapshot store> " + e);
   }
 }
\ No newline at end of file
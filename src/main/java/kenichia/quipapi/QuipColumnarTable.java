@@ -0,0 +1,334 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Read-only, column oriented snapshot of a {@link QuipTable}.
+ * <p>
+ * Each column holds its cell text in one array, and all row and cell ids
+ * share a single string with an offset table, so a large spreadsheet costs
+ * a few arrays per column instead of objects per cell. Numeric columns can
+ * be viewed as {@link LongColumn} or {@link DoubleColumn}, where blank or
+ * unparsable cells are marked in a null bitmap.
+ */
+public class QuipColumnarTable {
+
+  private final String _id;
+  private final String[] _headers;
+  private final int _firstRow;
+  private final int _rowSize;
+  // [column][row]
+  private final String[][] _values;
+  // row ids followed by the cell ids in column major order
+  private final String _ids;
+  private final int[] _idEnds;
+
+  // ============================================
+  // Typed columns
+  // ============================================
+
+  public static class LongColumn {
+    private final long[] _values;
+    private final BitSet _nulls;
+
+    private LongColumn(long[] values, BitSet nulls) {
+      _values = values;
+      _nulls = nulls;
+    }
+
+    public int size() {
+      return _values.length;
+    }
+
+    public boolean isNull(int row) {
+      return _nulls.get(row);
+    }
+
+    /**
+     * @return - the value, or 0 for a null cell.
+     */
+    public long get(int row) {
+      return _values[row];
+    }
+
+    public int getNullCount() {
+      return _nulls.cardinality();
+    }
+
+    /**
+     * @return - the non-null values in row order.
+     */
+    public LongStream stream() {
+      return _nonNullRows(_values.length, _nulls).mapToLong(r -> _values[r]);
+    }
+  }
+
+  public static class DoubleColumn {
+    private final double[] _values;
+    private final BitSet _nulls;
+
+    private DoubleColumn(double[] values, BitSet nulls) {
+      _values = values;
+      _nulls = nulls;
+    }
+
+    public int size() {
+      return _values.length;
+    }
+
+    public boolean isNull(int row) {
+      return _nulls.get(row);
+    }
+
+    /**
+     * @return - the value, or NaN for a null cell.
+     */
+    public double get(int row) {
+      return _values[row];
+    }
+
+    public int getNullCount() {
+      return _nulls.cardinality();
+    }
+
+    /**
+     * @return - the non-null values in row order.
+     */
+    public DoubleStream stream() {
+      return _nonNullRows(_values.length, _nulls)
+          .mapToDouble(r -> _values[r]);
+    }
+  }
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  QuipColumnarTable(Element element) {
+    this(element, _rowsOf(element), 0, -1);
+  }
+
+  /**
+   * Copies rows {@code fromRow} (inclusive) to {@code toRow} (exclusive) of
+   * the table, or up to the last row when {@code toRow} is negative.
+   */
+  QuipColumnarTable(Element element, Elements rows, int fromRow,
+      int toRow) {
+    _id = element.attr("id");
+    _firstRow = fromRow;
+    _rowSize = ((toRow < 0) ? rows.size() : toRow) - fromRow;
+
+    Element header = element.getElementsByTag("thead").first();
+    if (header != null) {
+      _headers = header.getElementsByTag("th").stream()
+          .filter(e -> e.hasAttr("id")).map(Element::text)
+          .toArray(String[]::new);
+    } else {
+      _headers = new String[rows.isEmpty() ? 0
+          : (int) rows.get(0).getElementsByTag("td").stream()
+              .filter(e -> e.hasAttr("id")).count()];
+    }
+
+    int columnSize = _headers.length;
+    _values = new String[columnSize][_rowSize];
+    String[][] cellIds = new String[columnSize][_rowSize];
+    StringBuilder ids = new StringBuilder(
+        (_rowSize + columnSize * _rowSize) * 16);
+    _idEnds = new int[_rowSize + columnSize * _rowSize];
+    for (int row = 0; row < _rowSize; row++) {
+      Element tr = rows.get(fromRow + row);
+      ids.append(tr.attr("id"));
+      _idEnds[row] = ids.length();
+      int column = 0;
+      for (Element td : tr.getElementsByTag("td")) {
+        if (column == columnSize)
+          break;
+        if (!td.hasAttr("id"))
+          continue;
+        _values[column][row] = td.text();
+        cellIds[column][row] = td.attr("id");
+        column++;
+      }
+    }
+    for (int column = 0; column < columnSize; column++) {
+      for (int row = 0; row < _rowSize; row++) {
+        String cellId = cellIds[column][row];
+        if (cellId != null)
+          ids.append(cellId);
+        _idEnds[_cellIndex(column, row)] = ids.length();
+      }
+    }
+    _ids = ids.toString();
+  }
+
+  // ============================================
+  // Properties
+  // ============================================
+
+  public String getId() {
+    return _id;
+  }
+
+  public int getColumnSize() {
+    return _values.length;
+  }
+
+  public int getRowSize() {
+    return _rowSize;
+  }
+
+  /**
+   * @return - index in the whole table of row 0 of this batch.
+   */
+  public int getFirstRow() {
+    return _firstRow;
+  }
+
+  public String getColumnHeader(int column) {
+    return _headers[column];
+  }
+
+  public String getRowId(int row) {
+    if (row < 0 || row >= _rowSize)
+      throw new IndexOutOfBoundsException("row: " + row);
+    return _idAt(row);
+  }
+
+  /**
+   * @return - the cell id, or null if the row has no such cell.
+   */
+  public String getCellId(int column, int row) {
+    String id = _idAt(_cellIndex(column, row));
+    return id.isEmpty() ? null : id;
+  }
+
+  public String getCellValue(int column, int row) {
+    return _values[column][row];
+  }
+
+  // ============================================
+  // Columns
+  // ============================================
+
+  /**
+   * @return - a copy of the cell text of the column.
+   */
+  public String[] getColumn(int column) {
+    return _values[column].clone();
+  }
+
+  /**
+   * Parses the column as integers. Thousands separators are ignored.
+   */
+  public LongColumn getLongColumn(int column) {
+    String[] texts = _values[column];
+    long[] values = new long[_rowSize];
+    BitSet nulls = new BitSet(_rowSize);
+    for (int row = 0; row < _rowSize; row++) {
+      String text = _normalize(texts[row]);
+      try {
+        values[row] = Long.parseLong(text);
+      } catch (NumberFormatException e) {
+        nulls.set(row);
+      }
+    }
+    return new LongColumn(values, nulls);
+  }
+
+  /**
+   * Parses the column as decimals. Thousands separators are ignored.
+   */
+  public DoubleColumn getDoubleColumn(int column) {
+    String[] texts = _values[column];
+    double[] values = new double[_rowSize];
+    BitSet nulls = new BitSet(_rowSize);
+    for (int row = 0; row < _rowSize; row++) {
+      String text = _normalize(texts[row]);
+      try {
+        values[row] = Double.parseDouble(text);
+      } catch (NumberFormatException e) {
+        values[row] = Double.NaN;
+        nulls.set(row);
+      }
+    }
+    return new DoubleColumn(values, nulls);
+  }
+
+  /**
+   * @return - indexes of the rows whose cell in the column matches.
+   */
+  public int[] scan(int column, Predicate<String> predicate) {
+    String[] texts = _values[column];
+    int[] rows = new int[16];
+    int size = 0;
+    for (int row = 0; row < _rowSize; row++) {
+      if (!predicate.test(texts[row]))
+        continue;
+      if (size == rows.length)
+        rows = Arrays.copyOf(rows, size * 2);
+      rows[size++] = row;
+    }
+    return Arrays.copyOf(rows, size);
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  static Elements _rowsOf(Element table) {
+    return table.getElementsByTag("tbody").first().getElementsByTag("tr");
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private int _cellIndex(int column, int row) {
+    if (column < 0 || column >= _values.length)
+      throw new IndexOutOfBoundsException("column: " + column);
+    if (row < 0 || row >= _rowSize)
+      throw new IndexOutOfBoundsException("row: " + row);
+    return _rowSize + column * _rowSize + row;
+  }
+
+  private String _idAt(int index) {
+    return _ids.substring((index == 0) ? 0 : _idEnds[index - 1],
+        _idEnds[index]);
+  }
+
+  private static String _normalize(String text) {
+    if (text == null)
+      return "";
+    text = text.trim();
+    return (text.indexOf(',') < 0) ? text : text.replace(",", "");
+  }
+
+  private static IntStream _nonNullRows(int size,
+      BitSet nulls) {
+    return IntStream.range(0, size)
+        .filter(r -> !nulls.get(r));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+/**
+ * Receives the folders and threads discovered by a {@link QuipFolderCrawler},
+ * one at a time on the crawling thread.
+ */
+public interface QuipCrawlVisitor {
+
+  /**
+   * @param depth - 0 for the root folders.
+   */
+  public void onFolder(QuipFolder folder, int depth);
+
+  /**
+   * Called only when the crawler fetches threads.
+   *
+   * @param depth - depth of the folder the thread was found in, plus one.
+   */
+  public default void onThread(QuipThread thread, int depth) {
+  };
+
+  /**
+   * @param id    - folder or thread id that could not be fetched.
+   * @param error - cause of the failure.
+   */
+  public default void onError(String id, Throwable error) {
+  };
+}
\ No newline at end of file
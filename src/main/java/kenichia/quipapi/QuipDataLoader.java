@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.utils.URIBuilder;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single-id lookups into bulk requests.
+ * <p>
+ * The first lookup opens a batch that stays open for the configured window;
+ * every lookup arriving in the meantime joins it, and the batch is sent as
+ * one {@code ?ids=} request when the window closes or the batch reaches the
+ * client's bulk chunk size. Lookups for an id that is already queued or in
+ * flight share its future instead of issuing another request.
+ */
+class QuipDataLoader extends QuipAccess {
+
+  private final QuipClient _client;
+  private final String _path;
+  private final long _windowMillis;
+  private final int _maxBatchSize;
+  private final Map<String, CompletableFuture<JsonObject>> _inFlight = new ConcurrentHashMap<>();
+
+  // guarded by this
+  private Map<String, CompletableFuture<JsonObject>> _pending = new LinkedHashMap<>();
+  private boolean _isClosed;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  /**
+   * @param path   - bulk endpoint relative to {@link QuipAccess#ENDPOINT}.
+   * @param window - how long a batch waits for more ids.
+   */
+  QuipDataLoader(QuipClient client, String path, Duration window,
+      int maxBatchSize) {
+    _client = client;
+    _path = path;
+    _windowMillis = window.toMillis();
+    _maxBatchSize = maxBatchSize;
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  CompletableFuture<JsonObject> _load(String id) {
+    CompletableFuture<JsonObject> future = _inFlight.get(id);
+    if (future != null)
+      return future;
+    Map<String, CompletableFuture<JsonObject>> full = null;
+    synchronized (this) {
+      future = _inFlight.get(id);
+      if (future != null)
+        return future;
+      if (_isClosed)
+        return CompletableFuture.failedFuture(_closed());
+      future = new CompletableFuture<>();
+      _inFlight.put(id, future);
+      _pending.put(id, future);
+      if (_pending.size() >= _maxBatchSize) {
+        full = _pending;
+        _pending = new LinkedHashMap<>();
+      } else if (_pending.size() == 1) {
+        Map<String, CompletableFuture<JsonObject>> batch = _pending;
+        CompletableFuture.runAsync(() -> _dispatch(batch), CompletableFuture
+            .delayedExecutor(_windowMillis, TimeUnit.MILLISECONDS));
+      }
+    }
+    if (full != null)
+      _send(full);
+    return future;
+  }
+
+  JsonObject _get(String id) throws IOException {
+    try {
+      return _load(id).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Fails the queued and in-flight lookups; later lookups fail right away.
+   */
+  void _close() {
+    Map<String, CompletableFuture<JsonObject>> pending;
+    synchronized (this) {
+      _isClosed = true;
+      pending = _pending;
+      _pending = new LinkedHashMap<>();
+    }
+    IllegalStateException closed = _closed();
+    pending.values().forEach(future -> future.completeExceptionally(closed));
+    _inFlight.values().forEach(future -> future.completeExceptionally(closed));
+    _inFlight.clear();
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private static IllegalStateException _closed() {
+    return new IllegalStateException("Client closed");
+  }
+
+  private void _dispatch(Map<String, CompletableFuture<JsonObject>> batch) {
+    synchronized (this) {
+      // Already sent because it filled up before the window closed
+      if (_pending != batch)
+        return;
+      _pending = new LinkedHashMap<>();
+    }
+    _send(batch);
+  }
+
+  private void _send(Map<String, CompletableFuture<JsonObject>> batch) {
+    CompletableFuture<JsonObject> request;
+    try {
+      request = _getToJsonObjectAsync(_client,
+          new URIBuilder(QuipAccess.ENDPOINT + _path)
+              .addParameter("ids", String.join(",", batch.keySet())).build());
+    } catch (URISyntaxException e) {
+      request = CompletableFuture.failedFuture(e);
+    }
+    request.whenComplete((json, error) -> batch.forEach((id, future) -> {
+      future.whenComplete((v, e) -> _inFlight.remove(id, future));
+      // A batch the server rejected is retried id by id, so that one bad id
+      // does not fail the others
+      boolean isRejected = (error != null) && _isRejected(_unwrap(error));
+      if (error != null && (!isRejected || batch.size() == 1)) {
+        future.completeExceptionally(_unwrap(error));
+        return;
+      }
+      JsonElement element = isRejected ? null : json.get(id);
+      if (element != null && element.isJsonObject()) {
+        future.complete(element.getAsJsonObject());
+        return;
+      }
+      // Ids the bulk response is not keyed by (e.g. secret paths) are looked
+      // up on their own so that callers see the single-entity response
+      _getToJsonObjectAsync(_client, QuipAccess.ENDPOINT + _path + id)
+          .whenComplete((single, singleError) -> {
+            if (singleError != null)
+              future.completeExceptionally(_unwrap(singleError));
+            else
+              future.complete(single);
+          });
+    }));
+  }
+
+  private static boolean _isRejected(Throwable error) {
+    if (!(error instanceof HttpResponseException))
+      return false;
+    int statusCode = ((HttpResponseException) error).getStatusCode();
+    // Error bodies sent with 200 count as rejections as well
+    return statusCode < 500 && !QuipRetryPolicy._isRetryable(statusCode);
+  }
+
+  private static Throwable _unwrap(Throwable error) {
+    return (error instanceof CompletionException && error.getCause() != null)
+        ? error.getCause()
+        : error;
+  }
+}
\ No newline at end of file
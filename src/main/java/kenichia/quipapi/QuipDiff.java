@@ -49,6 +49,10 @@ public class QuipDiff extends QuipJsonObject {
     super(json);
   }
 
+  protected QuipDiff(QuipClient client, JsonObject json) {
+    super(client, json);
+  }
+
   // ============================================
   // Properties
   // ============================================
@@ -30,6 +30,10 @@ public class QuipDiffGroup extends QuipJsonObject {
     super(json);
   }
 
+  protected QuipDiffGroup(QuipClient client, JsonObject json) {
+    super(client, json);
+  }
+
   // ============================================
   // Properties
   // ============================================
@@ -39,7 +43,7 @@ public class QuipDiffGroup extends QuipJsonObject {
     if (arr == null)
       return null;
     QuipDiff[] diffs = StreamSupport.stream(arr.spliterator(), false)
-        .map(obj -> new QuipDiff(obj.getAsJsonObject()))
+        .map(obj -> new QuipDiff(_getClient(), obj.getAsJsonObject()))
         .toArray(QuipDiff[]::new);
     return diffs;
   }
@@ -19,13 +19,20 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.apache.http.client.fluent.Form;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.message.BasicNameValuePair;
 
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class QuipFolder extends QuipJsonObject {
 
+    // memoized field slots, see QuipJsonObject
+    private static final int CREATED_USEC_SLOT = 0;
+    private static final int UPDATED_USEC_SLOT = 1;
+    private static final int MEMBER_IDS_SLOT = 2;
+
     // ============================================
     // Enum
     // ============================================
@@ -94,6 +101,10 @@ public class QuipFolder extends QuipJsonObject {
         super(json);
     }
 
+    protected QuipFolder(QuipClient client, JsonObject json) {
+        super(client, json);
+    }
+
     // ============================================
     // Properties
     // ============================================
@@ -111,11 +122,11 @@ public class QuipFolder extends QuipJsonObject {
     }
 
     public Instant getCreatedUsec() {
-        return _getInstant("folder", "created_usec");
+        return _getInstant(CREATED_USEC_SLOT, "folder", "created_usec");
     }
 
     public Instant getUpdatedUsec() {
-        return _getInstant("folder", "updated_usec");
+        return _getInstant(UPDATED_USEC_SLOT, "folder", "updated_usec");
     }
 
     public String getCreatorId() {
@@ -130,8 +141,12 @@ public class QuipFolder extends QuipJsonObject {
         return _getString("folder", "parent_id");
     }
 
+    /**
+     * @return - user ids; the array is shared between calls and must not be
+     * modified.
+     */
     public String[] getMemberIds() {
-        return _getStringArray("member_ids");
+        return _getStringArray(MEMBER_IDS_SLOT, "member_ids");
     }
 
     public Node[] getChildren() {
@@ -147,31 +162,127 @@ public class QuipFolder extends QuipJsonObject {
 
     public static QuipFolder getFolder(String folderId, boolean includeChats)
             throws Exception {
-        return new QuipFolder(_getToJsonObject(
+        return getFolder(QuipClient._getDefault(), folderId, includeChats);
+    }
+
+    public static QuipFolder getFolder(QuipClient client, String folderId,
+                                       boolean includeChats) throws Exception {
+        String cacheId = _cacheId(folderId, includeChats);
+        JsonObject cached = client._getCached(QuipCache.FOLDER, cacheId);
+        if (cached != null)
+            return new QuipFolder(client, cached);
+        QuipFolder folder = new QuipFolder(client, _getToJsonObject(client,
                 new URIBuilder(QuipAccess.ENDPOINT + "/folders/" + folderId)
                         .addParameter("include_chats",
                                 String.valueOf(includeChats))
                         .build()));
+        client._putCached(QuipCache.FOLDER, null, cacheId,
+                folder._getJsonObject(), folder.getUpdatedUsec());
+        return folder;
     }
 
     public static QuipFolder[] getFolders(String[] folderIds, boolean includeChats) throws Exception {
-        JsonObject json = _getToJsonObject(
+        return getFolders(QuipClient._getDefault(), folderIds, includeChats);
+    }
+
+    public static QuipFolder[] getFolders(QuipClient client, String[] folderIds,
+                                          boolean includeChats) throws Exception {
+        JsonObject json = _getToJsonObject(client,
                 new URIBuilder(QuipAccess.ENDPOINT + "/folders/")
                         .addParameter("ids", String.join(",", folderIds))
                         .addParameter("include_chats",
                                 String.valueOf(includeChats))
                         .build());
         return json.keySet().stream()
-                .map(id -> new QuipFolder(json.get(id).getAsJsonObject()))
+                .map(id -> new QuipFolder(client, json.get(id).getAsJsonObject()))
                 .toArray(QuipFolder[]::new);
     }
 
+    public static CompletableFuture<QuipFolder> getFolderAsync(String folderId,
+                                                               boolean includeChats) throws Exception {
+        return getFolderAsync(QuipClient._getDefault(), folderId, includeChats);
+    }
+
+    public static CompletableFuture<QuipFolder> getFolderAsync(
+            QuipClient client, String folderId, boolean includeChats)
+            throws Exception {
+        return _getToJsonObjectAsync(client,
+                new URIBuilder(QuipAccess.ENDPOINT + "/folders/" + folderId)
+                        .addParameter("include_chats",
+                                String.valueOf(includeChats))
+                        .build())
+                .thenApply(json -> new QuipFolder(client, json));
+    }
+
+    public static CompletableFuture<QuipFolder[]> getFoldersAsync(
+            String[] folderIds, boolean includeChats) throws Exception {
+        return getFoldersAsync(QuipClient._getDefault(), folderIds,
+                includeChats);
+    }
+
+    public static CompletableFuture<QuipFolder[]> getFoldersAsync(
+            QuipClient client, String[] folderIds, boolean includeChats)
+            throws Exception {
+        return _getToJsonObjectAsync(client,
+                new URIBuilder(QuipAccess.ENDPOINT + "/folders/")
+                        .addParameter("ids", String.join(",", folderIds))
+                        .addParameter("include_chats",
+                                String.valueOf(includeChats))
+                        .build())
+                .thenApply(json -> json.keySet().stream()
+                        .map(id -> new QuipFolder(client, json.get(id).getAsJsonObject()))
+                        .toArray(QuipFolder[]::new));
+    }
+
+    /**
+     * Fetches any number of folders by splitting the ids into chunks that are
+     * requested concurrently. Folders that could not be fetched are reported
+     * in {@link QuipBulkResult#getFailures()}.
+     *
+     * @param folderIds - folder ids.
+     * @return - folders in the order of {@code folderIds}.
+     */
+    public static QuipBulkResult<QuipFolder> getFoldersBulk(String[] folderIds,
+                                                            boolean includeChats) {
+        return getFoldersBulk(QuipClient._getDefault(), folderIds,
+                includeChats);
+    }
+
+    public static QuipBulkResult<QuipFolder> getFoldersBulk(QuipClient client,
+                                                            String[] folderIds, boolean includeChats) {
+        return getFoldersBulkAsync(client, folderIds, includeChats).join();
+    }
+
+    public static CompletableFuture<QuipBulkResult<QuipFolder>> getFoldersBulkAsync(
+            String[] folderIds, boolean includeChats) {
+        return getFoldersBulkAsync(QuipClient._getDefault(), folderIds,
+                includeChats);
+    }
+
+    public static CompletableFuture<QuipBulkResult<QuipFolder>> getFoldersBulkAsync(
+            QuipClient client, String[] folderIds, boolean includeChats) {
+        return _getBulkAsync(client, QuipAccess.ENDPOINT + "/folders/",
+                folderIds, json -> new QuipFolder(client, json),
+                new BasicNameValuePair("include_chats",
+                        String.valueOf(includeChats)));
+    }
+
+    /**
+     * Refetches the folder. With a {@link QuipCache} or
+     * {@link QuipSnapshotStore} configured on the client, a copy that is still
+     * fresh is used instead.
+     */
     public boolean reload() throws Exception {
-        JsonObject object = _getToJsonObject(
-                QuipAccess.ENDPOINT + "/folders/" + getId());
+        String cacheId = _cacheId(getId(), false);
+        JsonObject object = _getClient()._getCached(QuipCache.FOLDER, cacheId);
+        if (object == null)
+            object = _getToJsonObject(_getClient(),
+                    QuipAccess.ENDPOINT + "/folders/" + getId());
         if (object == null)
             return false;
-        _replace(object);
+        super._replace(object);
+        _getClient()._putCached(QuipCache.FOLDER, null, cacheId, object,
+                getUpdatedUsec());
         return true;
     }
 
@@ -181,6 +292,13 @@ public class QuipFolder extends QuipJsonObject {
 
     public static QuipFolder create(String title, Color color, String parentId,
                                     String[] memberIds, boolean includeChats) throws Exception {
+        return create(QuipClient._getDefault(), title, color, parentId,
+                memberIds, includeChats);
+    }
+
+    public static QuipFolder create(QuipClient client, String title,
+                                    Color color, String parentId,
+                                    String[] memberIds, boolean includeChats) throws Exception {
         Form form = Form.form();
         if (title != null)
             form.add("title", title);
@@ -191,8 +309,8 @@ public class QuipFolder extends QuipJsonObject {
         if (memberIds != null)
             form.add("member_ids",
                     String.join(",", memberIds));
-        return new QuipFolder(
-                _postToJsonObject(
+        return new QuipFolder(client,
+                _postToJsonObject(client,
                         new URIBuilder(QuipAccess.ENDPOINT + "/folders/new")
                                 .addParameter("include_chats",
                                         String.valueOf(includeChats))
@@ -207,7 +325,7 @@ public class QuipFolder extends QuipJsonObject {
             form.add("title", title);
         if (color != null)
             form.add("color", color._value);
-        JsonObject object = _postToJsonObject(
+        JsonObject object = _postToJsonObject(_getClient(),
                 new URIBuilder(QuipAccess.ENDPOINT + "/folders/update")
                         .addParameter("include_chats",
                                 String.valueOf(includeChats))
@@ -228,7 +346,7 @@ public class QuipFolder extends QuipJsonObject {
     }
 
     public boolean addMembers(String[] userIds) throws Exception {
-        JsonObject object = _postToJsonObject(
+        JsonObject object = _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/folders/add-members",
                 Form.form().add("folder_id", getId()).add("member_ids",
                         String.join(",", userIds)));
@@ -243,7 +361,7 @@ public class QuipFolder extends QuipJsonObject {
     }
 
     public boolean removeMembers(String[] userIds) throws Exception {
-        JsonObject object = _postToJsonObject(
+        JsonObject object = _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/folders/remove-members",
                 Form.form().add("folder_id", getId()).add("member_ids",
                         String.join(",", userIds)));
@@ -252,4 +370,22 @@ public class QuipFolder extends QuipJsonObject {
         _replace(object);
         return true;
     }
-}
+
+    // ============================================
+    // Cache
+    // ============================================
+
+    /**
+     * Drops the cached copies of this folder; the payload of an update is
+     * not cached because it may or may not include chats.
+     */
+    @Override
+    protected void _replace(JsonObject object) {
+        super._replace(object);
+        _getClient()._invalidateCached(QuipCache.FOLDER, getId());
+    }
+
+    private static String _cacheId(String folderId, boolean includeChats) {
+        return includeChats ? folderId + "?include_chats" : folderId;
+    }
+}
\ No newline at end of file
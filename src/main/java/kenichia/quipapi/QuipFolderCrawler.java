@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Breadth-first walk of a folder tree.
+ * <p>
+ * Each level is fetched with one chunked bulk {@code /folders/?ids=} call,
+ * and the threads found on a level are fetched with {@code /threads/?ids=}
+ * while the next level of folders is being fetched. Concurrency is bounded
+ * by the client's bulk settings. Folders and threads reachable through more
+ * than one parent, including cycles, are visited once.
+ */
+public class QuipFolderCrawler {
+
+  private final QuipClient _client;
+  private final boolean _isIncludeChats;
+  private final boolean _isFetchThreads;
+  private final int _maxDepth;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  public QuipFolderCrawler() {
+    this(QuipClient._getDefault());
+  }
+
+  public QuipFolderCrawler(QuipClient client) {
+    this(client, false, true, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param includeChats   - include chats among the folder children.
+   * @param isFetchThreads - fetch the threads and report them to
+   *                       {@link QuipCrawlVisitor#onThread}.
+   * @param maxDepth       - deepest folder level to visit; 0 visits the roots
+   *                       only.
+   */
+  public QuipFolderCrawler(QuipClient client, boolean includeChats,
+      boolean isFetchThreads, int maxDepth) {
+    _client = Objects.requireNonNull(client);
+    if (maxDepth < 0)
+      throw new IllegalArgumentException(
+          "maxDepth must not be negative: " + maxDepth);
+    _isIncludeChats = includeChats;
+    _isFetchThreads = isFetchThreads;
+    _maxDepth = maxDepth;
+  }
+
+  // ============================================
+  // Public
+  // ============================================
+
+  /**
+   * @param rootFolderIds - folders to start from.
+   * @param visitor       - receives every folder and thread found.
+   * @return - number of folders visited.
+   */
+  public int crawl(String[] rootFolderIds, QuipCrawlVisitor visitor) {
+    Objects.requireNonNull(visitor);
+    Set<String> visitedFolders = new HashSet<>();
+    Set<String> visitedThreads = new HashSet<>();
+    List<String> frontier = new ArrayList<>();
+    for (String id : rootFolderIds)
+      if (visitedFolders.add(id))
+        frontier.add(id);
+    int visited = 0;
+    CompletableFuture<QuipBulkResult<QuipThread>> pendingThreads = null;
+    for (int depth = 0; !frontier.isEmpty(); depth++) {
+      CompletableFuture<QuipBulkResult<QuipFolder>> folders = QuipFolder
+          .getFoldersBulkAsync(_client, frontier.toArray(String[]::new),
+              _isIncludeChats);
+      if (pendingThreads != null)
+        _visitThreads(pendingThreads.join(), depth, visitor);
+
+      QuipBulkResult<QuipFolder> result = folders.join();
+      List<String> nextFrontier = new ArrayList<>();
+      List<String> threadIds = new ArrayList<>();
+      List<String> ids = result.getIds();
+      List<QuipFolder> found = result.getResults();
+      for (int i = 0; i < ids.size(); i++) {
+        String id = ids.get(i);
+        QuipFolder folder = found.get(i);
+        if (folder == null) {
+          visitor.onError(id, result.getFailures().get(id));
+          continue;
+        }
+        visitor.onFolder(folder, depth);
+        visited++;
+        for (QuipFolder.Node child : folder.getChildren()) {
+          if (child.isFolder()) {
+            if (depth < _maxDepth && visitedFolders.add(child.getId()))
+              nextFrontier.add(child.getId());
+          } else if (_isFetchThreads && visitedThreads.add(child.getId())) {
+            threadIds.add(child.getId());
+          }
+        }
+      }
+      pendingThreads = threadIds.isEmpty() ? null
+          : QuipThread.getThreadsBulkAsync(_client,
+              threadIds.toArray(String[]::new));
+      frontier = nextFrontier;
+      if (frontier.isEmpty() && pendingThreads != null)
+        _visitThreads(pendingThreads.join(), depth + 1, visitor);
+    }
+    return visited;
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private static void _visitThreads(QuipBulkResult<QuipThread> result,
+      int depth, QuipCrawlVisitor visitor) {
+    List<String> ids = result.getIds();
+    List<QuipThread> found = result.getResults();
+    for (int i = 0; i < ids.size(); i++) {
+      String id = ids.get(i);
+      QuipThread thread = found.get(i);
+      if (thread == null)
+        visitor.onError(id, result.getFailures().get(id));
+      else
+        visitor.onThread(thread, depth);
+    }
+  }
+}
\ No newline at end of file
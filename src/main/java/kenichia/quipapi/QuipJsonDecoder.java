@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Decodes a response body with a {@link JsonReader} straight into entities.
+ * <p>
+ * Neither the body text nor a tree of the whole response is built: each
+ * entity object is assembled as it is read, keeping only the top level
+ * fields accepted by the field filter and skipping the rest unparsed.
+ */
+class QuipJsonDecoder {
+
+  static final Predicate<String> ALL_FIELDS = field -> true;
+
+  private final QuipClient _client;
+  private final Predicate<String> _fields;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  QuipJsonDecoder(QuipClient client, Predicate<String> fields) {
+    _client = client;
+    _fields = fields;
+  }
+
+  /**
+   * @return - a filter keeping only the given top level fields.
+   */
+  static Predicate<String> _including(String... fields) {
+    Set<String> included = new HashSet<>(Arrays.asList(fields));
+    return included::contains;
+  }
+
+  /**
+   * @return - a filter keeping all but the given top level fields.
+   */
+  static Predicate<String> _excluding(String... fields) {
+    Set<String> excluded = new HashSet<>(Arrays.asList(fields));
+    return field -> !excluded.contains(field);
+  }
+
+  // ============================================
+  // Decode
+  // ============================================
+
+  /**
+   * Decodes {@code {"id": {...}, ...}} as returned by the bulk endpoints.
+   *
+   * @return - entities by id in response order, or null if the body is an
+   * error object.
+   */
+  <T> Map<String, T> _decodeMap(InputStream in,
+      Function<JsonObject, T> factory) throws IOException {
+    try (JsonReader reader = _open(in)) {
+      Map<String, T> entities = new LinkedHashMap<>();
+      JsonObject extras = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String id = reader.nextName();
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+          entities.put(id, factory.apply(_decodeEntity(reader)));
+        } else {
+          if (extras == null)
+            extras = new JsonObject();
+          extras.add(id, JsonParser.parseReader(reader));
+        }
+      }
+      reader.endObject();
+      if (extras != null && QuipAccess._checkError(_client, extras))
+        return null;
+      return entities;
+    }
+  }
+
+  /**
+   * Decodes {@code [{...}, ...]}.
+   */
+  <T> List<T> _decodeArray(InputStream in, Function<JsonObject, T> factory)
+      throws IOException {
+    try (JsonReader reader = _open(in)) {
+      List<T> entities = new ArrayList<>();
+      reader.beginArray();
+      while (reader.hasNext())
+        entities.add(factory.apply(_decodeEntity(reader)));
+      reader.endArray();
+      return entities;
+    }
+  }
+
+  /**
+   * Decodes a single entity object.
+   *
+   * @return - the entity, or null if the body is an error object.
+   */
+  <T> T _decodeObject(InputStream in, Function<JsonObject, T> factory)
+      throws IOException {
+    try (JsonReader reader = _open(in)) {
+      JsonObject json = _decodeEntity(reader);
+      if (json.has("error") && QuipAccess._checkError(_client, json))
+        return null;
+      return factory.apply(json);
+    }
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private JsonReader _open(InputStream in) {
+    return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  private JsonObject _decodeEntity(JsonReader reader) throws IOException {
+    JsonObject json = new JsonObject();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String field = reader.nextName();
+      if (_fields.test(field) || field.equals("error"))
+        json.add(field, JsonParser.parseReader(reader));
+      else
+        reader.skipValue();
+    }
+    reader.endObject();
+    QuipLogger logger = _client._getLogger();
+    if (logger != null)
+      logger.debug("Json> " + json.toString());
+    return json;
+  }
+}
\ No newline at end of file
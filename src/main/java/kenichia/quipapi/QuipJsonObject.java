@@ -21,19 +21,42 @@ import com.google.gson.JsonObject;
 
 import java.time.Instant;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
 import java.util.stream.StreamSupport;
 
+/**
+ * Base of the entities backed by a json payload.
+ * <p>
+ * Instants and string arrays are decoded once per payload and then handed
+ * out from memoized slots, so repeated getter calls neither parse the payload
+ * nor allocate. Each memoized field has a fixed slot index (below
+ * {@link #SLOT_COUNT}) chosen by the subclass; the returned arrays are shared
+ * and must not be modified. {@link #_replace} installs a new payload with
+ * empty slots.
+ */
 class QuipJsonObject extends QuipAccess {
 
-  private JsonObject _jsonObject;
+  static final int SLOT_COUNT = 8;
+
+  private static final Object ABSENT = new Object();
+
+  private final QuipClient _client;
+  private volatile Payload _payload;
 
   // ============================================
   // Constructor
   // ============================================
 
   protected QuipJsonObject(JsonObject object) {
+    this(QuipClient._getDefault(), object);
+  }
+
+  protected QuipJsonObject(QuipClient client, JsonObject object) {
+    Objects.requireNonNull(client);
     Objects.requireNonNull(object);
-    _jsonObject = object;
+    _client = client;
+    _payload = new Payload(object);
   }
 
   // ============================================
@@ -42,25 +65,33 @@ class QuipJsonObject extends QuipAccess {
 
   @Override
   public String toString() {
-    return _jsonObject.toString();
+    return _payload._json.toString();
   }
 
   // ============================================
   // Protected
   // ============================================
 
+  protected QuipClient _getClient() {
+    return _client;
+  }
+
+  protected JsonObject _getJsonObject() {
+    return _payload._json;
+  }
+
   protected void _replace(JsonObject object) {
     Objects.requireNonNull(object);
-    _jsonObject = object;
+    _payload = new Payload(object);
   }
 
   protected String _getString(String key) {
-    JsonElement element = _jsonObject.get(key);
+    JsonElement element = _payload._json.get(key);
     return (element == null) ? null : element.getAsString();
   }
 
   protected boolean _getBoolean(String key) {
-    JsonElement element = _jsonObject.get(key);
+    JsonElement element = _payload._json.get(key);
     return (element == null) ? false : element.getAsBoolean();
   }
 
@@ -73,17 +104,17 @@ class QuipJsonObject extends QuipAccess {
   }
 
   protected int _getInt(String key) {
-    JsonElement element = _jsonObject.get(key);
+    JsonElement element = _payload._json.get(key);
     return (element == null) ? 0 : element.getAsInt();
   }
 
   protected double _getDouble(String key) {
-    JsonElement element = _jsonObject.get(key);
+    JsonElement element = _payload._json.get(key);
     return (element == null) ? 0.0 : element.getAsDouble();
   }
 
   protected JsonObject _getJsonObject(String key) {
-    JsonElement element = _jsonObject.get(key);
+    JsonElement element = _payload._json.get(key);
     return (element == null) ? null : element.getAsJsonObject();
   }
 
@@ -96,50 +127,103 @@ class QuipJsonObject extends QuipAccess {
   }
 
   protected JsonArray _getJsonArray(String key) {
-    JsonElement element = _jsonObject.get(key);
+    JsonElement element = _payload._json.get(key);
     return (element == null) ? null : element.getAsJsonArray();
   }
 
-  protected String[] _getStringArray(String key) {
-    JsonArray array = _getJsonArray(key);
-    if (array == null)
-      return null;
-    return _toStringArray(array);
+  protected String[] _getStringArray(int slot, String key) {
+    return _memoized(slot, null, key, String[].class,
+        QuipJsonObject::_decodeStringArray);
   }
 
-  protected String[] _getStringArray(String keyToJsonObject,
+  protected String[] _getStringArray(int slot, String keyToJsonObject,
       String keyToArray) {
-    JsonObject object = _getJsonObject(keyToJsonObject);
-    if (object == null)
-      return null;
-    JsonArray array = object.get(keyToArray).getAsJsonArray();
-    if (array == null)
-      return null;
-    return _toStringArray(array);
+    return _memoized(slot, keyToJsonObject, keyToArray, String[].class,
+        QuipJsonObject::_decodeStringArray);
   }
 
-  protected Instant _getInstant(String key) {
-    return _toInstant(_jsonObject, key);
+  protected Instant _getInstant(int slot, String key) {
+    return _memoized(slot, null, key, Instant.class,
+        QuipJsonObject::_decodeInstant);
   }
 
-  protected Instant _getInstant(String keyToJsonObject, String keyToInstant) {
-    JsonObject object = _getJsonObject(keyToJsonObject);
-    if (object == null)
-      return null;
-    return _toInstant(object, keyToInstant);
+  protected Instant _getInstant(int slot, String keyToJsonObject,
+      String keyToInstant) {
+    return _memoized(slot, keyToJsonObject, keyToInstant, Instant.class,
+        QuipJsonObject::_decodeInstant);
+  }
+
+  /**
+   * @param fields   - top level fields to keep, or null for all.
+   * @param required - fields kept regardless.
+   */
+  protected static Predicate<String> _fieldFilter(String[] fields,
+      String... required) {
+    if (fields == null)
+      return QuipJsonDecoder.ALL_FIELDS;
+    return QuipJsonDecoder._including(fields)
+        .or(QuipJsonDecoder._including(required));
   }
 
   // ============================================
   // Private
   // ============================================
 
-  private String[] _toStringArray(JsonArray array) {
-    return StreamSupport.stream(array.spliterator(), false)
+  /**
+   * @param outer - key of the nested object holding the field, or null for a
+   *              top level field.
+   */
+  private <T> T _memoized(int slot, String outer, String key, Class<T> type,
+      Decoder<T> decoder) {
+    Payload payload = _payload;
+    Object value = payload._slots.get(slot);
+    if (value == ABSENT)
+      return null;
+    if (value != null)
+      return type.cast(value);
+    JsonObject object = (outer == null) ? payload._json
+        : _asJsonObject(payload._json.get(outer));
+    T decoded = (object == null) ? null : decoder._decode(object, key);
+    // Racing readers decode the same value, so the last write wins harmlessly
+    payload._slots.set(slot, (decoded == null) ? ABSENT : decoded);
+    return decoded;
+  }
+
+  private static JsonObject _asJsonObject(JsonElement element) {
+    return (element == null) ? null : element.getAsJsonObject();
+  }
+
+  private static String[] _decodeStringArray(JsonObject object, String key) {
+    JsonElement element = object.get(key);
+    if (element == null)
+      return null;
+    return StreamSupport.stream(element.getAsJsonArray().spliterator(), false)
         .map(JsonElement::getAsString).toArray(String[]::new);
   }
 
-  private Instant _toInstant(JsonObject object, String key) {
-    long usec = object.get(key).getAsLong();
+  private static Instant _decodeInstant(JsonObject object, String key) {
+    JsonElement element = object.get(key);
+    if (element == null)
+      return null;
+    long usec = element.getAsLong();
     return Instant.ofEpochSecond(usec / 1000000, (usec % 1000000) * 1000);
   }
+
+  private interface Decoder<T> {
+    T _decode(JsonObject object, String key);
+  }
+
+  /**
+   * A json payload with the fields decoded from it so far.
+   */
+  private static class Payload {
+    private final JsonObject _json;
+    // slot index -> decoded value, ABSENT, or null if not decoded yet
+    private final AtomicReferenceArray<Object> _slots = new AtomicReferenceArray<>(
+        SLOT_COUNT);
+
+    private Payload(JsonObject json) {
+      _json = json;
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+/**
+ * Receives the debug output of a {@link QuipClient}.
+ * <p>
+ * A client without a logger skips formatting debug messages altogether, so
+ * leaving debugging off costs one null check per call.
+ */
+@FunctionalInterface
+public interface QuipLogger {
+
+  /**
+   * Prints every message to standard output.
+   */
+  public static final QuipLogger STDOUT = System.out::println;
+
+  public void debug(String message);
+}
\ No newline at end of file
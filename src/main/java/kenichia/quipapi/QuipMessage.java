@@ -19,17 +19,29 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.message.BasicNameValuePair;
 
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class QuipMessage extends QuipJsonObject {
 
+  // memoized field slots, see QuipJsonObject
+  private static final int CREATED_USEC_SLOT = 0;
+  private static final int UPDATED_USEC_SLOT = 1;
+  private static final int HIGHLIGHT_SECTION_IDS_SLOT = 2;
+
   // ============================================
   // Constructor
   // ============================================
@@ -38,6 +50,10 @@ public class QuipMessage extends QuipJsonObject {
     super(json);
   }
 
+  protected QuipMessage(QuipClient client, JsonObject json) {
+    super(client, json);
+  }
+
   // ============================================
   // Properties
   // ============================================
@@ -55,11 +71,11 @@ public class QuipMessage extends QuipJsonObject {
   }
 
   public Instant getCreatedUsec() {
-    return _getInstant("created_usec");
+    return _getInstant(CREATED_USEC_SLOT, "created_usec");
   }
 
   public Instant getUpdatedUsec() {
-    return _getInstant("updated_usec");
+    return _getInstant(UPDATED_USEC_SLOT, "updated_usec");
   }
 
   public String getText() {
@@ -74,8 +90,13 @@ public class QuipMessage extends QuipJsonObject {
     return _getString("annotation", "id");
   }
 
+  /**
+   * @return - section ids; the array is shared between calls and must not be
+   * modified.
+   */
   public String[] getHighlightSectionIds() {
-    return _getStringArray("annotation", "highlight_section_ids");
+    return _getStringArray(HIGHLIGHT_SECTION_IDS_SLOT, "annotation",
+        "highlight_section_ids");
   }
 
   public boolean isVisible() {
@@ -129,7 +150,7 @@ public class QuipMessage extends QuipJsonObject {
     if (arr == null)
       return null;
     QuipDiffGroup[] diffGroups = StreamSupport.stream(arr.spliterator(), false)
-        .map(obj -> new QuipDiffGroup(obj.getAsJsonObject()))
+        .map(obj -> new QuipDiffGroup(_getClient(), obj.getAsJsonObject()))
         .toArray(QuipDiffGroup[]::new);
     return diffGroups;
   }
@@ -149,6 +170,94 @@ public class QuipMessage extends QuipJsonObject {
   public static QuipMessage[] getRecentMessages(String threadId, Integer count, Instant maxCreatedUsec, Instant updatedSinceUsec,
                                                 Instant lastUpdatedSinceUsec, QuipThread.SortedBy sortedBy,
                                                 QuipThread.MessageType messageType) throws Exception {
+    return getRecentMessages(QuipClient._getDefault(), threadId, count,
+        maxCreatedUsec, updatedSinceUsec, lastUpdatedSinceUsec, sortedBy,
+        messageType);
+  }
+
+  public static QuipMessage[] getRecentMessages(QuipClient client,
+      String threadId, Integer count, Instant maxCreatedUsec,
+      Instant updatedSinceUsec, Instant lastUpdatedSinceUsec,
+      QuipThread.SortedBy sortedBy, QuipThread.MessageType messageType)
+      throws Exception {
+    List<NameValuePair> params = _getRecentMessagesParams(count,
+        maxCreatedUsec, updatedSinceUsec, lastUpdatedSinceUsec, sortedBy,
+        messageType);
+    QuipCache cache = client.getCache();
+    String cacheId = threadId + "?" + URLEncodedUtils.format(params,
+        StandardCharsets.UTF_8);
+    JsonObject cached = (cache == null) ? null
+            : cache._get(QuipCache.MESSAGES, cacheId);
+    JsonArray arr;
+    if (cached != null) {
+      arr = cached.getAsJsonArray("messages");
+    } else {
+      arr = new JsonArray();
+      for (JsonObject message : _getToEntityList(client,
+          new URIBuilder(QuipAccess.ENDPOINT + "/messages/" + threadId)
+              .addParameters(params).build(),
+          QuipJsonDecoder.ALL_FIELDS, json -> json))
+        arr.add(message);
+      if (cache != null) {
+        JsonObject wrapper = new JsonObject();
+        wrapper.add("messages", arr);
+        cache._put(QuipCache.MESSAGES, null, cacheId, wrapper, null);
+      }
+    }
+    return StreamSupport.stream(arr.spliterator(), false)
+            .map(obj -> new QuipMessage(client, obj.getAsJsonObject()))
+            .toArray(QuipMessage[]::new);
+  }
+
+  /**
+   * Streams the messages of a thread, newest first, fetching one page of
+   * {@code pageSize} messages at a time as the stream is consumed.
+   *
+   * @param threadId       - thread id.
+   * @param pageSize       - messages requested per page.
+   * @param maxCreatedUsec - newest message to start from, or null.
+   * @param messageType    - type of messages to return, or null.
+   * @param isPrefetch     - request the next page while the current one is
+   *                       being consumed.
+   * @return - lazily paginated stream; close it to cancel a prefetched page.
+   */
+  public static Stream<QuipMessage> streamRecentMessages(String threadId,
+      int pageSize, Instant maxCreatedUsec,
+      QuipThread.MessageType messageType, boolean isPrefetch) {
+    return streamRecentMessages(QuipClient._getDefault(), threadId, pageSize,
+        maxCreatedUsec, messageType, isPrefetch);
+  }
+
+  public static Stream<QuipMessage> streamRecentMessages(QuipClient client,
+      String threadId, int pageSize, Instant maxCreatedUsec,
+      QuipThread.MessageType messageType, boolean isPrefetch) {
+    return new QuipPageIterator<QuipMessage>(cursor -> {
+      URI uri;
+      try {
+        uri = new URIBuilder(QuipAccess.ENDPOINT + "/messages/" + threadId)
+            .addParameters(_getRecentMessagesParams(pageSize, cursor, null,
+                null, QuipThread.SortedBy.NONE, messageType))
+            .build();
+      } catch (URISyntaxException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+      return _getToJsonArrayAsync(client, uri)
+          .thenApply(arr -> StreamSupport.stream(arr.spliterator(), false)
+              .map(obj -> new QuipMessage(client, obj.getAsJsonObject()))
+              .collect(Collectors.toCollection(ArrayList::new)));
+    }, QuipMessage::getCreatedUsec, QuipMessage::getId, pageSize,
+        maxCreatedUsec, isPrefetch)
+        ._stream();
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private static List<NameValuePair> _getRecentMessagesParams(Integer count,
+      Instant maxCreatedUsec, Instant updatedSinceUsec,
+      Instant lastUpdatedSinceUsec, QuipThread.SortedBy sortedBy,
+      QuipThread.MessageType messageType) {
     List<NameValuePair> params = new ArrayList<>();
     if (Objects.nonNull(count)) {
       params.add(new BasicNameValuePair("count", String.valueOf(count)));
@@ -179,11 +288,6 @@ public class QuipMessage extends QuipJsonObject {
     if (messageType != null) {
       params.add(new BasicNameValuePair("message_type", messageType.name().toLowerCase()));
     }
-    JsonArray arr = _getToJsonArray(
-            new URIBuilder(QuipAccess.ENDPOINT + "/messages/" + threadId)
-                    .addParameters(params).build());
-    return StreamSupport.stream(arr.spliterator(), false)
-            .map(obj -> new QuipMessage(obj.getAsJsonObject()))
-            .toArray(QuipMessage[]::new);
+    return params;
   }
 }
\ No newline at end of file
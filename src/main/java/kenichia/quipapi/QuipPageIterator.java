@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks an endpoint that pages backward in time through a
+ * {@code max_*_usec} cursor, newest first.
+ * <p>
+ * A page is requested only when the previous one has been consumed, or, with
+ * prefetch enabled, as soon as the previous one arrives, so its latency
+ * overlaps with the caller's processing. At most two pages are held at a
+ * time. The cursor stays at the oldest item of each page, so the next page
+ * starts with the items sharing that microsecond; the ones already returned
+ * are recognized by id and dropped. Only when more than a full page of items
+ * share one microsecond does the cursor have to step below it.
+ *
+ * @param <T> - entity type.
+ */
+class QuipPageIterator<T> implements Iterator<T> {
+
+  private final Function<Instant, CompletableFuture<List<T>>> _fetch;
+  private final Function<T, Instant> _timeOf;
+  private final Function<T, String> _idOf;
+  private final int _pageSize;
+  private final boolean _isPrefetch;
+  private Iterator<T> _page = Collections.emptyIterator();
+  private CompletableFuture<List<T>> _next;
+  private Instant _cursor;
+  // ids of the items already returned whose timestamp equals _cursor
+  private final Set<String> _seenAtCursor = new HashSet<>();
+  private boolean _isLast;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  /**
+   * @param fetch      - requests the page at or below the given cursor (null
+   *                   for the newest page).
+   * @param timeOf     - timestamp the endpoint pages by.
+   * @param idOf       - identity of an item, to drop the ones a page repeats.
+   * @param pageSize   - items requested per page; a shorter page is the last.
+   * @param cursor     - initial cursor, or null.
+   * @param isPrefetch - request the next page before it is needed.
+   */
+  QuipPageIterator(Function<Instant, CompletableFuture<List<T>>> fetch,
+      Function<T, Instant> timeOf, Function<T, String> idOf, int pageSize,
+      Instant cursor,
+      boolean isPrefetch) {
+    if (pageSize <= 0)
+      throw new IllegalArgumentException(
+          "pageSize must be positive: " + pageSize);
+    _fetch = fetch;
+    _timeOf = timeOf;
+    _idOf = idOf;
+    _pageSize = pageSize;
+    _cursor = cursor;
+    _isPrefetch = isPrefetch;
+  }
+
+  // ============================================
+  // Iterator
+  // ============================================
+
+  @Override
+  public boolean hasNext() {
+    while (!_page.hasNext()) {
+      if (_isLast)
+        return false;
+      CompletableFuture<List<T>> request = (_next != null) ? _next
+          : _fetch.apply(_cursor);
+      _next = null;
+      List<T> page = _await(request);
+      if (page.size() < _pageSize)
+        _isLast = true;
+      page.sort(Comparator.comparing(_timeOf).reversed());
+      List<T> fresh = new ArrayList<>(page.size());
+      for (T item : page)
+        if (!_timeOf.apply(item).equals(_cursor)
+            || !_seenAtCursor.contains(_idOf.apply(item)))
+          fresh.add(item);
+      if (!page.isEmpty())
+        _advance(_timeOf.apply(page.get(page.size() - 1)), fresh);
+      if (!_isLast && _isPrefetch)
+        _next = _fetch.apply(_cursor);
+      _page = fresh.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    return _page.next();
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  /**
+   * @return - a sequential stream over the iterator; closing it cancels a
+   *         prefetched page.
+   */
+  Stream<T> _stream() {
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(this::_close);
+  }
+
+  void _close() {
+    _isLast = true;
+    _page = Collections.emptyIterator();
+    if (_next != null) {
+      _next.cancel(false);
+      _next = null;
+    }
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private void _advance(Instant oldest, List<T> fresh) {
+    if (fresh.isEmpty()) {
+      // A full page of one microsecond that was already returned; stepping
+      // below it is the only way forward.
+      _cursor = oldest.minusNanos(1000);
+      _seenAtCursor.clear();
+      return;
+    }
+    if (!oldest.equals(_cursor)) {
+      _cursor = oldest;
+      _seenAtCursor.clear();
+    }
+    for (T item : fresh)
+      if (_timeOf.apply(item).equals(oldest))
+        _seenAtCursor.add(_idOf.apply(item));
+  }
+
+  private static <T> T _await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof IOException)
+        throw new UncheckedIOException((IOException) cause);
+      throw e;
+    }
+  }
+}
\ No newline at end of file
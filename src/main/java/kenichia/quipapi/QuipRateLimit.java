@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.util.function.Function;
+
+/**
+ * Rate limit headers last reported to a {@link QuipClient}.
+ */
+public class QuipRateLimit {
+
+  private volatile Integer _userLimit = 0;
+  private volatile Integer _userRemaining = 0;
+  // utc timestamp in seconds
+  private volatile Long _userReset = 0L;
+  private volatile Integer _userRetryAfter = 0;
+  private volatile Integer _companyLimit = 0;
+  private volatile Integer _companyRemaining = 0;
+  // utc timestamp in seconds
+  private volatile Long _companyReset = 0L;
+  private volatile Integer _companyRetryAfter = 0;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  QuipRateLimit() {
+  }
+
+  // ============================================
+  // Properties
+  // ============================================
+
+  public Integer getUserLimit() {
+    return _userLimit;
+  }
+
+  public Integer getUserRemaining() {
+    return _userRemaining;
+  }
+
+  public Long getUserReset() {
+    return _userReset;
+  }
+
+  public Integer getUserRetryAfter() {
+    return _userRetryAfter;
+  }
+
+  public Integer getCompanyLimit() {
+    return _companyLimit;
+  }
+
+  public Integer getCompanyRemaining() {
+    return _companyRemaining;
+  }
+
+  public Long getCompanyReset() {
+    return _companyReset;
+  }
+
+  public Integer getCompanyRetryAfter() {
+    return _companyRetryAfter;
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  synchronized void _update(Function<String, String> headers) {
+    _userLimit = Integer.valueOf(_headerOrZero(headers, "X-Ratelimit-Limit"));
+    _userRemaining = Integer
+        .valueOf(_headerOrZero(headers, "X-Ratelimit-Remaining"));
+    _userReset = Long.valueOf(_headerOrZero(headers, "X-Ratelimit-Reset"));
+    _userRetryAfter = _retryAfter(headers, "Retry-After");
+
+    _companyLimit = Integer
+        .valueOf(_headerOrZero(headers, "X-Company-RateLimit-Limit"));
+    _companyRemaining = Integer
+        .valueOf(_headerOrZero(headers, "X-Company-RateLimit-Remaining"));
+    _companyReset = Long
+        .valueOf(_headerOrZero(headers, "X-Company-RateLimit-Reset"));
+    _companyRetryAfter = _retryAfter(headers, "X-Company-Retry-After");
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private static String _headerOrZero(Function<String, String> headers,
+      String name) {
+    String value = headers.apply(name);
+    return (value == null) ? "0" : value;
+  }
+
+  private static Integer _retryAfter(Function<String, String> headers,
+      String name) {
+    // An HTTP date instead of seconds counts as 0, as in the retry handling
+    return (int) Math.min(Integer.MAX_VALUE,
+        QuipAccess._parseSeconds(headers.apply(name)));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client side admission control for a {@link QuipClient}.
+ * <p>
+ * The remaining budget reported by the X-Ratelimit-* and
+ * X-Company-RateLimit-* headers is spread over the time left until the
+ * window resets, so bursts are queued locally instead of being answered with
+ * 429. Up to {@code burst} requests may go out back to back while the bucket
+ * is full. Once the window has reset, requests are admitted at
+ * {@code burst} per second until a response reports the new window.
+ */
+public class QuipRateLimiter {
+
+  private final boolean _isEnabled;
+  private final int _burst;
+  private final AtomicInteger _queueDepth = new AtomicInteger();
+
+  // guarded by this
+  private int _remaining = -1;
+  private long _resetMillis;
+  private double _tokens;
+  private double _tokensPerMilli;
+  private long _lastRefillMillis;
+  private boolean _isRolledOver;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  QuipRateLimiter(boolean isEnabled, int burst) {
+    _isEnabled = isEnabled;
+    _burst = burst;
+    _tokens = burst;
+  }
+
+  // ============================================
+  // Properties
+  // ============================================
+
+  public boolean isEnabled() {
+    return _isEnabled;
+  }
+
+  /**
+   * @return - number of requests currently waiting for admission.
+   */
+  public int getQueueDepth() {
+    return _queueDepth.get();
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  void _acquire() throws InterruptedIOException {
+    long delay = _reserve();
+    if (delay <= 0)
+      return;
+    _queueDepth.incrementAndGet();
+    try {
+      while (delay > 0) {
+        Thread.sleep(delay);
+        delay = _reserve();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while rate limited");
+    } finally {
+      _queueDepth.decrementAndGet();
+    }
+  }
+
+  CompletableFuture<Void> _acquireAsync() {
+    long delay = _reserve();
+    if (delay <= 0)
+      return CompletableFuture.completedFuture(null);
+    _queueDepth.incrementAndGet();
+    return _reserveAfter(delay);
+  }
+
+  void _update(QuipRateLimit rateLimit) {
+    if (!_isEnabled)
+      return;
+    long now = System.currentTimeMillis();
+    int remaining = -1;
+    long resetMillis = 0;
+    double tokensPerMilli = Double.MAX_VALUE;
+    if (rateLimit.getUserLimit() > 0) {
+      remaining = rateLimit.getUserRemaining();
+      resetMillis = rateLimit.getUserReset() * 1000;
+      tokensPerMilli = _rate(remaining, resetMillis, now);
+    }
+    if (rateLimit.getCompanyLimit() > 0) {
+      long companyResetMillis = rateLimit.getCompanyReset() * 1000;
+      double companyTokensPerMilli = _rate(rateLimit.getCompanyRemaining(),
+          companyResetMillis, now);
+      if (remaining < 0 || companyTokensPerMilli < tokensPerMilli) {
+        remaining = rateLimit.getCompanyRemaining();
+        resetMillis = companyResetMillis;
+        tokensPerMilli = companyTokensPerMilli;
+      }
+    }
+    if (remaining < 0)
+      return;
+    synchronized (this) {
+      _refill(now);
+      _remaining = remaining;
+      _resetMillis = resetMillis;
+      _tokensPerMilli = tokensPerMilli;
+      _tokens = Math.min(_tokens, Math.min(_burst, remaining));
+      _isRolledOver = false;
+    }
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private CompletableFuture<Void> _reserveAfter(long delay) {
+    return CompletableFuture.supplyAsync(this::_reserve, CompletableFuture
+        .delayedExecutor(delay, TimeUnit.MILLISECONDS))
+        .thenCompose(next -> {
+          if (next > 0)
+            return _reserveAfter(next);
+          _queueDepth.decrementAndGet();
+          return CompletableFuture.completedFuture(null);
+        });
+  }
+
+  /**
+   * Takes a slot if one is free.
+   *
+   * @return - 0 if the caller is admitted, otherwise how long to wait before
+   * trying again.
+   */
+  private synchronized long _reserve() {
+    if (!_isEnabled || (_remaining < 0 && !_isRolledOver))
+      return 0;
+    long now = System.currentTimeMillis();
+    if (_remaining >= 0 && now >= _resetMillis) {
+      // The window has rolled over; pace at burst per second until the next
+      // response tells us about the new one, so the callers that waited for
+      // the reset do not all go out at once.
+      _refill(now);
+      _remaining = -1;
+      _isRolledOver = true;
+      _tokens = _burst;
+      _tokensPerMilli = _burst / 1000.0;
+    }
+    if (_remaining == 0)
+      return Math.max(_resetMillis - now, 1);
+    _refill(now);
+    if (_tokens < 1)
+      return Math.max((long) Math.ceil((1 - _tokens) / _tokensPerMilli), 1);
+    _tokens -= 1;
+    if (_remaining > 0)
+      _remaining--;
+    return 0;
+  }
+
+  private void _refill(long now) {
+    if (_lastRefillMillis > 0 && _tokensPerMilli > 0)
+      _tokens = Math.min(_burst,
+          _tokens + (now - _lastRefillMillis) * _tokensPerMilli);
+    _lastRefillMillis = now;
+  }
+
+  private static double _rate(int remaining, long resetMillis, long now) {
+    return Math.max(remaining, 0) / (double) Math.max(resetMillis - now, 1);
+  }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import org.apache.http.client.HttpResponseException;
+
+/**
+ * An error answered by the Quip API, with the HTTP status and the
+ * {@code error}, {@code error_code} and {@code error_description} fields of
+ * the response body when it had them.
+ */
+public class QuipResponseException extends HttpResponseException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String _error;
+  private final String _errorCode;
+  private final String _errorDescription;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  QuipResponseException(int statusCode, String reasonPhrase, String error,
+      String errorCode, String errorDescription) {
+    super(statusCode, reasonPhrase);
+    _error = error;
+    _errorCode = errorCode;
+    _errorDescription = errorDescription;
+  }
+
+  // ============================================
+  // Properties
+  // ============================================
+
+  /**
+   * @return - the {@code error} field of the response, or null.
+   */
+  public String getError() {
+    return _error;
+  }
+
+  /**
+   * @return - the {@code error_code} field of the response, or null.
+   */
+  public String getErrorCode() {
+    return _errorCode;
+  }
+
+  /**
+   * @return - the {@code error_description} field of the response, or null.
+   */
+  public String getErrorDescription() {
+    return _errorDescription;
+  }
+
+  @Override
+  public String getMessage() {
+    if (_error == null)
+      return super.getMessage();
+    return super.getMessage() + ", error: "
+        + ((_errorCode == null) ? "" : _errorCode + " ") + _error
+        + ((_errorDescription == null) ? "" : " (" + _errorDescription + ")");
+  }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable retry schedule for 429 and 503 responses.
+ * <p>
+ * Without a Retry-After header the n-th retry waits a random time between
+ * zero and {@code min(maxDelay, baseDelay * 2^n)} ("full jitter"). When the
+ * server sends Retry-After (or X-Company-Retry-After) that wait is used
+ * instead, plus up to one {@code baseDelay} of jitter so that queued callers
+ * do not all come back in the same millisecond. Either way a wait never
+ * exceeds {@code maxDelay}.
+ */
+public class QuipRetryPolicy {
+
+  public static final QuipRetryPolicy DEFAULT = new QuipRetryPolicy(50,
+      Duration.ofMillis(100), Duration.ofSeconds(60));
+
+  private final int _maxRetries;
+  private final long _baseDelayMillis;
+  private final long _maxDelayMillis;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  public QuipRetryPolicy(int maxRetries, Duration baseDelay,
+      Duration maxDelay) {
+    Objects.requireNonNull(baseDelay);
+    Objects.requireNonNull(maxDelay);
+    if (maxRetries < 0)
+      throw new IllegalArgumentException(
+          "maxRetries must not be negative: " + maxRetries);
+    if (baseDelay.toMillis() < 1)
+      throw new IllegalArgumentException(
+          "baseDelay must be at least 1ms: " + baseDelay);
+    if (maxDelay.compareTo(baseDelay) < 0)
+      throw new IllegalArgumentException(
+          "maxDelay must not be shorter than baseDelay: " + maxDelay);
+    _maxRetries = maxRetries;
+    _baseDelayMillis = baseDelay.toMillis();
+    _maxDelayMillis = maxDelay.toMillis();
+  }
+
+  // ============================================
+  // Properties
+  // ============================================
+
+  public int getMaxRetries() {
+    return _maxRetries;
+  }
+
+  public Duration getBaseDelay() {
+    return Duration.ofMillis(_baseDelayMillis);
+  }
+
+  public Duration getMaxDelay() {
+    return Duration.ofMillis(_maxDelayMillis);
+  }
+
+  public QuipRetryPolicy withMaxRetries(int maxRetries) {
+    return new QuipRetryPolicy(maxRetries, getBaseDelay(), getMaxDelay());
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  static boolean _isRetryable(int statusCode) {
+    return statusCode == 429 || statusCode == 503;
+  }
+
+  /**
+   * @param retryCount        - number of retries already made for the request
+   * @param retryAfterSeconds - Retry-After reported by the server, or 0
+   * @return - milliseconds to wait before the next attempt.
+   */
+  long _getDelayMillis(int retryCount, long retryAfterSeconds) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (retryAfterSeconds > 0)
+      return Math.min(_maxDelayMillis,
+          Math.min(retryAfterSeconds, _maxDelayMillis / 1000) * 1000
+              + random.nextLong(_baseDelayMillis));
+    long ceiling = (retryCount >= 30)
+        ? _maxDelayMillis
+        : Math.min(_maxDelayMillis, _baseDelayMillis << retryCount);
+    return random.nextLong(ceiling + 1);
+  }
+}
\ No newline at end of file
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persistent store of thread, folder and user payloads for fast cold starts.
+ * <p>
+ * Payloads are appended to {@code snapshots.log} and located through an
+ * in-memory index that is saved to {@code snapshots.idx} by {@link #flush()}
+ * and {@link #close()}. Opening a store only records its directory; the index
+ * is read the first time the store is used, and the log is scanned only past
+ * the point the saved index covers (or from the start if the index is missing
+ * or stale). Payloads themselves are read from the log on demand.
+ * <p>
+ * A payload is served while it was confirmed within the client's maximum age.
+ * After that a thread is revalidated with a metadata read that skips the
+ * html; if its {@code updated_usec} has not moved, the stored payload is
+ * confirmed and served without fetching the body. Other payloads are
+ * refetched, and one whose {@code updated_usec} shows nothing changed only
+ * has its confirmation time updated.
+ */
+public class QuipSnapshotStore implements Closeable {
+
+  private static final String LOG_FILE = "snapshots.log";
+  private static final String INDEX_FILE = "snapshots.idx";
+  private static final int INDEX_VERSION = 1;
+  // updatedUsec, savedAtMillis, hash
+  private static final int HEADER_SIZE = 8 + 8 + 4;
+  private static final long COMPACT_THRESHOLD = 8 * 1024 * 1024;
+
+  private final Path _directory;
+
+  // guarded by this
+  private FileChannel _log;
+  private long _logLength;
+  private long _liveBytes;
+  private Map<String, Slot> _index;
+
+  private static class Slot {
+    private final long _offset;
+    private final int _length;
+    private final long _updatedUsec;
+    private final int _hash;
+    private long _validatedAtMillis;
+
+    private Slot(long offset, int length, long updatedUsec, int hash,
+        long validatedAtMillis) {
+      _offset = offset;
+      _length = length;
+      _updatedUsec = updatedUsec;
+      _hash = hash;
+      _validatedAtMillis = validatedAtMillis;
+    }
+  }
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  private QuipSnapshotStore(Path directory) {
+    _directory = directory;
+  }
+
+  /**
+   * @param directory - directory holding the store; created if missing.
+   */
+  public static QuipSnapshotStore open(Path directory) throws IOException {
+    Objects.requireNonNull(directory);
+    Files.createDirectories(directory);
+    return new QuipSnapshotStore(directory);
+  }
+
+  // ============================================
+  // Public
+  // ============================================
+
+  public synchronized int size() throws IOException {
+    _ensureLoaded();
+    return _index.size();
+  }
+
+  /**
+   * Saves the index so the next start does not have to scan the log.
+   */
+  public synchronized void flush() throws IOException {
+    if (_index == null)
+      return;
+    _log.force(false);
+    Path tmp = _directory.resolve(INDEX_FILE + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(INDEX_VERSION);
+      out.writeLong(_logLength);
+      out.writeInt(_index.size());
+      for (Map.Entry<String, Slot> entry : _index.entrySet()) {
+        Slot slot = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeLong(slot._offset);
+        out.writeInt(slot._length);
+        out.writeLong(slot._updatedUsec);
+        out.writeInt(slot._hash);
+        out.writeLong(slot._validatedAtMillis);
+      }
+    }
+    Files.move(tmp, _directory.resolve(INDEX_FILE),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Rewrites the log with only the current payloads.
+   */
+  public synchronized void compact() throws IOException {
+    _ensureLoaded();
+    Path tmp = _directory.resolve(LOG_FILE + ".tmp");
+    Map<String, Slot> index = new HashMap<>();
+    long length = 0;
+    try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (Map.Entry<String, Slot> entry : _index.entrySet()) {
+        Slot slot = entry.getValue();
+        ByteBuffer record = ByteBuffer.allocate(4 + slot._length);
+        _readFully(slot._offset, record);
+        record.flip();
+        while (record.hasRemaining())
+          out.write(record);
+        index.put(entry.getKey(), new Slot(length, slot._length,
+            slot._updatedUsec, slot._hash, slot._validatedAtMillis));
+        length += 4 + slot._length;
+      }
+      out.force(false);
+    }
+    _log.close();
+    Files.move(tmp, _directory.resolve(LOG_FILE),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    _log = FileChannel.open(_directory.resolve(LOG_FILE),
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    _logLength = length;
+    _liveBytes = length;
+    _index = index;
+    flush();
+  }
+
+  /**
+   * Saves the index and closes the log, compacting it first if more than
+   * half of it is superseded payloads.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (_index == null)
+      return;
+    if (_logLength > COMPACT_THRESHOLD && _liveBytes < _logLength / 2)
+      compact();
+    else
+      flush();
+    _log.close();
+    _log = null;
+    _index = null;
+  }
+
+  public void invalidateThread(String threadId) throws IOException {
+    _invalidate(QuipCache.THREAD, threadId);
+  }
+
+  public void invalidateUser(String userId) throws IOException {
+    _invalidate(QuipCache.USER, userId);
+  }
+
+  public void invalidateFolder(String folderId) throws IOException {
+    _invalidate(QuipCache.FOLDER, folderId);
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  /**
+   * @param maxAgeMillis - how long ago the payload may have been confirmed.
+   * @return - the stored payload, or null if it is missing or too old.
+   */
+  synchronized JsonObject _get(String type, String id, long maxAgeMillis)
+      throws IOException {
+    _ensureLoaded();
+    Slot slot = _index.get(_key(type, id));
+    if (slot == null
+        || System.currentTimeMillis() - slot._validatedAtMillis > maxAgeMillis)
+      return null;
+    return _read(slot);
+  }
+
+  /**
+   * @return - true if a payload with an {@code updated_usec} is stored,
+   *         however long ago it was confirmed.
+   */
+  synchronized boolean _isRevalidatable(String type, String id)
+      throws IOException {
+    _ensureLoaded();
+    Slot slot = _index.get(_key(type, id));
+    return slot != null && slot._updatedUsec >= 0;
+  }
+
+  /**
+   * Confirms the stored payload if it is still at {@code updatedUsec}.
+   *
+   * @return - the stored payload, or null if it is missing or has changed.
+   */
+  synchronized JsonObject _revalidate(String type, String id,
+      Instant updatedUsec) throws IOException {
+    _ensureLoaded();
+    Slot slot = _index.get(_key(type, id));
+    long usec = _toUsec(updatedUsec);
+    if (slot == null || usec < 0 || slot._updatedUsec != usec)
+      return null;
+    slot._validatedAtMillis = System.currentTimeMillis();
+    return _read(slot);
+  }
+
+  /**
+   * Stores a freshly fetched payload. If it carries the same
+   * {@code updated_usec} (or, without one, the same content) as the stored
+   * copy, the stored copy is only marked as confirmed.
+   */
+  synchronized void _put(String type, String id, JsonObject json,
+      Instant updatedUsec) throws IOException {
+    _ensureLoaded();
+    String key = _key(type, id);
+    long usec = _toUsec(updatedUsec);
+    long now = System.currentTimeMillis();
+    Slot slot = _index.get(key);
+    // Compared before serializing, which is only needed to store the payload
+    // or to tell payloads without updated_usec apart
+    if (slot != null && (usec >= 0 || slot._updatedUsec >= 0)) {
+      if (slot._updatedUsec == usec)
+        slot._validatedAtMillis = now;
+      if (slot._updatedUsec >= usec)
+        return;
+    }
+    String text = json.toString();
+    int hash = text.hashCode();
+    if (slot != null && usec < 0 && slot._hash == hash) {
+      slot._validatedAtMillis = now;
+      return;
+    }
+    _append(key, usec, now, hash, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  synchronized void _invalidateIfOlder(String type, String id,
+      Instant updatedUsec) throws IOException {
+    _ensureLoaded();
+    String key = _key(type, id);
+    Slot slot = _index.get(key);
+    if (slot != null && slot._updatedUsec < _toUsec(updatedUsec))
+      _append(key, -1, System.currentTimeMillis(), 0, null);
+  }
+
+  synchronized void _invalidate(String type, String id) throws IOException {
+    _ensureLoaded();
+    String key = _key(type, id);
+    // Folders are stored once per include_chats variant
+    for (String variant : new String[]{key, key + "?include_chats"})
+      if (_index.containsKey(variant))
+        _append(variant, -1, System.currentTimeMillis(), 0, null);
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private static String _key(String type, String id) {
+    return type + "/" + id;
+  }
+
+  private static long _toUsec(Instant instant) {
+    return (instant == null) ? -1
+        : instant.getEpochSecond() * 1000000 + instant.getNano() / 1000;
+  }
+
+  /**
+   * Appends a record; a null {@code json} is a tombstone.
+   */
+  private void _append(String key, long updatedUsec, long savedAtMillis,
+      int hash, byte[] json) throws IOException {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    int length = HEADER_SIZE + 2 + keyBytes.length + 4
+        + ((json == null) ? 0 : json.length);
+    ByteBuffer record = ByteBuffer.allocate(4 + length);
+    record.putInt(length).putLong(updatedUsec).putLong(savedAtMillis)
+        .putInt(hash).putShort((short) keyBytes.length).put(keyBytes);
+    if (json == null)
+      record.putInt(-1);
+    else
+      record.putInt(json.length).put(json);
+    record.flip();
+    long offset = _logLength;
+    long position = offset;
+    while (record.hasRemaining())
+      position += _log.write(record, position);
+    _logLength = position;
+    Slot previous = (json == null) ? _index.remove(key)
+        : _index.put(key,
+            new Slot(offset, length, updatedUsec, hash, savedAtMillis));
+    if (previous != null)
+      _liveBytes -= 4 + previous._length;
+    if (json != null)
+      _liveBytes += 4 + length;
+  }
+
+  private JsonObject _read(Slot slot) throws IOException {
+    ByteBuffer record = ByteBuffer.allocate(slot._length);
+    _readFully(slot._offset + 4, record);
+    record.flip();
+    record.position(HEADER_SIZE);
+    record.position(record.position() + 2 + record.getShort(HEADER_SIZE));
+    int jsonLength = record.getInt();
+    return JsonParser.parseString(new String(record.array(),
+        record.position(), jsonLength, StandardCharsets.UTF_8))
+        .getAsJsonObject();
+  }
+
+  private void _readFully(long position, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = _log.read(buffer, position);
+      if (read < 0)
+        throw new EOFException("Snapshot log is truncated at " + position);
+      position += read;
+    }
+  }
+
+  private void _ensureLoaded() throws IOException {
+    if (_index != null)
+      return;
+    _log = FileChannel.open(_directory.resolve(LOG_FILE),
+        StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    _index = new HashMap<>();
+    _liveBytes = 0;
+    long covered = _loadIndex();
+    _scan(covered);
+  }
+
+  /**
+   * @return - length of the log covered by the saved index, or 0 if there is
+   *         no usable index.
+   */
+  private long _loadIndex() throws IOException {
+    Path path = _directory.resolve(INDEX_FILE);
+    if (!Files.exists(path))
+      return 0;
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != INDEX_VERSION)
+        return 0;
+      long covered = in.readLong();
+      if (covered > _log.size())
+        return 0;
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String key = in.readUTF();
+        Slot slot = new Slot(in.readLong(), in.readInt(), in.readLong(),
+            in.readInt(), in.readLong());
+        _index.put(key, slot);
+        _liveBytes += 4 + slot._length;
+      }
+      return covered;
+    } catch (EOFException e) {
+      _index.clear();
+      _liveBytes = 0;
+      return 0;
+    }
+  }
+
+  /**
+   * Replays the log from {@code offset}, dropping a partially written record
+   * left at the end by a crash.
+   */
+  private void _scan(long offset) throws IOException {
+    long size = _log.size();
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Channels.newInputStream(_log.position(offset))));
+    while (offset + 4 <= size) {
+      int length = in.readInt();
+      if (length < HEADER_SIZE + 6 || offset + 4 + length > size)
+        break;
+      long updatedUsec = in.readLong();
+      long savedAtMillis = in.readLong();
+      int hash = in.readInt();
+      byte[] keyBytes = new byte[in.readShort()];
+      in.readFully(keyBytes);
+      int jsonLength = in.readInt();
+      if (jsonLength > 0 && in.skipBytes(jsonLength) != jsonLength)
+        throw new EOFException("Snapshot log is truncated at " + offset);
+      String key = new String(keyBytes, StandardCharsets.UTF_8);
+      Slot previous = (jsonLength < 0) ? _index.remove(key)
+          : _index.put(key,
+              new Slot(offset, length, updatedUsec, hash, savedAtMillis));
+      if (previous != null)
+        _liveBytes -= 4 + previous._length;
+      if (jsonLength >= 0)
+        _liveBytes += 4 + length;
+      offset += 4 + length;
+    }
+    if (offset < size)
+      _log.truncate(offset);
+    _logLength = offset;
+  }
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Incremental sync of the threads visible to a client.
+ * <p>
+ * Each {@link #sync()} pages backward through {@code /threads/recent}, newest
+ * first and one page ahead, until it reaches the high-water mark left by the
+ * previous pass, and reports only the threads updated since then. The
+ * high-water mark is saved to a file after the pass completes, so a pass
+ * interrupted by a crash is simply repeated. The first pass, with no saved
+ * mark, reports every thread.
+ * <p>
+ * Changed threads are also evicted from the client's cache and snapshot
+ * store if their copy is older than the reported {@code updated_usec}.
+ */
+public class QuipSyncEngine {
+
+  private static final int DEFAULT_PAGE_SIZE = 50;
+
+  private final QuipClient _client;
+  private final Path _stateFile;
+  private final QuipSyncListener _listener;
+  private final int _pageSize;
+  private final boolean _isIncludeHidden;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  public QuipSyncEngine(QuipClient client, Path stateFile,
+      QuipSyncListener listener) {
+    this(client, stateFile, listener, DEFAULT_PAGE_SIZE, false);
+  }
+
+  /**
+   * @param stateFile       - file the high-water mark is kept in.
+   * @param pageSize        - threads requested per page.
+   * @param isIncludeHidden - include hidden chats.
+   */
+  public QuipSyncEngine(QuipClient client, Path stateFile,
+      QuipSyncListener listener, int pageSize, boolean isIncludeHidden) {
+    _client = Objects.requireNonNull(client);
+    _stateFile = Objects.requireNonNull(stateFile);
+    _listener = Objects.requireNonNull(listener);
+    if (pageSize <= 0)
+      throw new IllegalArgumentException(
+          "pageSize must be positive: " + pageSize);
+    _pageSize = pageSize;
+    _isIncludeHidden = isIncludeHidden;
+  }
+
+  // ============================================
+  // Public
+  // ============================================
+
+  /**
+   * @return - the saved high-water mark, or null before the first pass.
+   */
+  public Instant getHighWaterMark() throws IOException {
+    long usec = _loadHighWaterMark();
+    return (usec < 0) ? null : _toInstant(usec);
+  }
+
+  /**
+   * Runs one pass and returns the number of changed threads reported.
+   */
+  public synchronized int sync() throws Exception {
+    long highWaterMark = _loadHighWaterMark();
+    long newHighWaterMark = highWaterMark;
+    int changed = 0;
+    try (Stream<QuipThread> threads = QuipThread.streamRecentThreads(_client,
+        _pageSize, null, _isIncludeHidden, true)) {
+      Iterator<QuipThread> iterator = threads.iterator();
+      while (iterator.hasNext()) {
+        QuipThread thread = iterator.next();
+        long usec = _toUsec(thread.getUpdatedUsec());
+        if (usec <= highWaterMark)
+          break;
+        newHighWaterMark = Math.max(newHighWaterMark, usec);
+        _client._invalidateCachedIfOlder(QuipCache.THREAD, thread.getId(),
+            thread.getUpdatedUsec());
+        _listener.onThreadChanged(thread);
+        changed++;
+      }
+    }
+    if (newHighWaterMark > highWaterMark)
+      _saveHighWaterMark(newHighWaterMark);
+    _listener.onSyncCompleted(
+        (newHighWaterMark < 0) ? null : _toInstant(newHighWaterMark), changed);
+    return changed;
+  }
+
+  /**
+   * Forgets the high-water mark so the next pass reports every thread.
+   */
+  public synchronized void reset() throws IOException {
+    Files.deleteIfExists(_stateFile);
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private long _loadHighWaterMark() throws IOException {
+    if (!Files.exists(_stateFile))
+      return -1;
+    String text = new String(Files.readAllBytes(_stateFile),
+        StandardCharsets.UTF_8).trim();
+    return text.isEmpty() ? -1 : Long.parseLong(text);
+  }
+
+  private void _saveHighWaterMark(long usec) throws IOException {
+    Path tmp = _stateFile.resolveSibling(_stateFile.getFileName() + ".tmp");
+    Files.write(tmp, String.valueOf(usec).getBytes(StandardCharsets.UTF_8));
+    Files.move(tmp, _stateFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static long _toUsec(Instant instant) {
+    return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+  }
+
+  private static Instant _toInstant(long usec) {
+    return Instant.ofEpochSecond(usec / 1000000, (usec % 1000000) * 1000);
+  }
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.time.Instant;
+
+/**
+ * Receives the threads found by a {@link QuipSyncEngine} pass.
+ */
+public interface QuipSyncListener {
+
+  /**
+   * Called once per pass for every thread updated after the previous
+   * high-water mark, newest first.
+   */
+  public void onThreadChanged(QuipThread thread);
+
+  /**
+   * Called after the new high-water mark has been saved.
+   *
+   * @param highWaterMark - updated_usec of the newest thread seen so far.
+   * @param changedCount  - number of threads reported in this pass.
+   */
+  public default void onSyncCompleted(Instant highWaterMark,
+      int changedCount) {
+  };
+}
\ No newline at end of file
@@ -15,13 +15,28 @@
  */
 package kenichia.quipapi;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
 public class QuipTable {
 
+  // upper bound of the row html sent in one edit-document call
+  static final int MAX_ROWS_HTML_BYTES = 256 * 1024;
+
   private final QuipThread _parentThread;
   private final String _id;
   private QuipColumn[] _columns;
@@ -33,6 +48,10 @@ public class QuipTable {
     _construct(this, element);
   }
 
+  public String getId() {
+    return _id;
+  }
+
   public int getColumnSize() {
     return _columns.length;
   }
@@ -42,10 +61,9 @@ public class QuipTable {
   }
 
   public void refresh() {
-    Document document = Jsoup.parse(_parentThread.getHtml());
-    Elements elements = document.getElementsByAttributeValue("id", _id);
-    if (elements.size() > 0) {
-      _construct(this, elements.first());
+    Element element = _parentThread._getElementById(_id);
+    if (element != null) {
+      _construct(this, element);
     }
   }
 
@@ -105,6 +123,121 @@ public class QuipTable {
     return true;
   }
 
+  /**
+   * Appends the rows after the last one. The rows are sent in chunks of at
+   * most 256KB of html and the table is refreshed once at the end.
+   *
+   * @return - false if the table has no rows or an edit was rejected; the
+   * chunks sent before it stay applied.
+   */
+  public boolean addRows(String[][] values) throws Exception {
+    try {
+      return _addRows(values);
+    } finally {
+      refresh();
+    }
+  }
+
+  /**
+   * Inserts the rows before {@code row}, chunked like
+   * {@link #addRows(String[][])}.
+   */
+  public boolean insertRows(int row, String[][] values) throws Exception {
+    if (row < 0 || row >= _rows.length)
+      return false;
+    try {
+      return _insertRows(row, values);
+    } finally {
+      refresh();
+    }
+  }
+
+  /**
+   * Appends rows to several tables, editing up to {@code parallelism}
+   * documents at the same time on the client's worker threads (at most
+   * {@link QuipClient.Builder#bulkParallelism(int)}). Tables of the same
+   * document are edited one after another since every edit replaces the
+   * parent thread. Each table must appear only once.
+   *
+   * @param valuesByTable - rows to append to each table.
+   * @param parallelism   - number of documents edited concurrently.
+   * @return - false if any table could not be fully updated.
+   */
+  public static boolean addRows(Map<QuipTable, String[][]> valuesByTable,
+      int parallelism) throws Exception {
+    if (parallelism < 1)
+      throw new IllegalArgumentException(
+          "parallelism must be positive: " + parallelism);
+    Map<QuipThread, List<QuipTable>> tablesByThread = new LinkedHashMap<>();
+    valuesByTable.keySet().forEach(table -> tablesByThread
+        .computeIfAbsent(table._parentThread, k -> new ArrayList<>())
+        .add(table));
+    List<List<QuipTable>> groups = new ArrayList<>(tablesByThread.values());
+    if (groups.isEmpty())
+      return true;
+
+    AtomicInteger next = new AtomicInteger();
+    AtomicBoolean isSucceeded = new AtomicBoolean(true);
+    Queue<Exception> errors = new ConcurrentLinkedQueue<>();
+    Runnable worker = () -> {
+      for (int i = next.getAndIncrement(); i < groups.size(); i = next
+          .getAndIncrement()) {
+        for (QuipTable table : groups.get(i)) {
+          try {
+            if (!table._addRows(valuesByTable.get(table)))
+              isSucceeded.set(false);
+          } catch (Exception e) {
+            errors.add(e);
+          }
+        }
+      }
+    };
+    QuipClient client = groups.get(0).get(0)._parentThread._getClient();
+    CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(
+        Math.min(parallelism, client._getBulkParallelism()), groups.size())];
+    for (int i = 0; i < workers.length; i++)
+      workers[i] = CompletableFuture.runAsync(worker, client._getWorkers());
+    try {
+      CompletableFuture.allOf(workers).join();
+    } finally {
+      valuesByTable.keySet().forEach(QuipTable::refresh);
+    }
+    Exception error = errors.peek();
+    if (error != null)
+      throw error;
+    return isSucceeded.get();
+  }
+
+  private boolean _addRows(String[][] values) throws Exception {
+    if (_rows.length == 0)
+      return false;
+    // Every chunk goes right after the current last row, so the chunks are
+    // sent last first to keep the rows in order.
+    List<String> chunks = _makeRowsHtmlChunks(values);
+    String lastRowId = _rows[_rows.length - 1].getId();
+    for (int i = chunks.size() - 1; i >= 0; i--) {
+      if (!_parentThread.editDocument(chunks.get(i), QuipThread.Format.HTML,
+          QuipThread.Location.AFTER_SECTION, lastRowId))
+        return false;
+    }
+    return true;
+  }
+
+  private boolean _insertRows(int row, String[][] values) throws Exception {
+    String rowId = _rows[row].getId();
+    for (String chunk : _makeRowsHtmlChunks(values)) {
+      if (!_parentThread.editDocument(chunk, QuipThread.Format.HTML,
+          QuipThread.Location.BEFORE_SECTION, rowId))
+        return false;
+    }
+    return true;
+  }
+
+  private static List<String> _makeRowsHtmlChunks(String[][] values) {
+    return QuipTableWriter.rowChunks(Arrays.asList(values).iterator(),
+        MAX_ROWS_HTML_BYTES, false).collect(Collectors.toList());
+  }
+
   public boolean removeRow(int row) throws Exception {
     if (row < 0 || row >= _rows.length || _rows.length <= 1)
       return false;
@@ -120,34 +253,70 @@ public class QuipTable {
         new String[rowSize][columnSize]);
   }
 
+  /**
+   * @param columnHeaders - header values, written as html.
+   * @param cellValues    - cell values, written as html.
+   */
   public static String createTableHtml(String[] columnHeaders,
       String[][] cellValues) {
-    StringBuffer sb = new StringBuffer("<table>");
-    sb.append("<thead>");
-    sb.append("<tr>");
-    for (String header : columnHeaders) {
-      sb.append("<th>");
-      sb.append((header == null) ? "" : header);
-      sb.append("</th>");
-    }
-    sb.append("</tr>");
-    sb.append("</thead>");
-    sb.append("<tbody>");
-    for (String[] rowValues : cellValues) {
-      sb.append(_makeRowHtml(rowValues));
+    StringBuilder sb = new StringBuilder(
+        64 + 16 * columnHeaders.length * (cellValues.length + 1));
+    QuipTableWriter writer = new QuipTableWriter(sb, false);
+    try {
+      writer.writeStart(columnHeaders);
+      for (String[] rowValues : cellValues)
+        writer.writeRow(rowValues);
+      writer.writeEnd();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
-    sb.append("</tbody>");
     return sb.toString();
   }
 
-  private static String _makeRowHtml(String[] values) {
-    StringBuffer sb = new StringBuffer("<tr>");
-    for (String v : values) {
-      sb.append("<td>");
-      sb.append((v == null) ? "" : v);
-      sb.append("</td>");
-    }
-    sb.append("</tr>");
+  /**
+   * Starts collecting cell writes and row edits that are sent together by
+   * {@link QuipTableBatch#commit()}.
+   */
+  public QuipTableBatch batch() {
+    return new QuipTableBatch(this);
+  }
+
+  /**
+   * @return - a column oriented copy of the table as it is now in the parent
+   * thread, or null if the table is gone.
+   */
+  public QuipColumnarTable toColumnar() {
+    Element element = _parentThread._getElementById(_id);
+    return (element == null) ? null : new QuipColumnarTable(element);
+  }
+
+  QuipThread _getParentThread() {
+    return _parentThread;
+  }
+
+  String _getRowId(int row) {
+    return _rows[row].getId();
+  }
+
+  /**
+   * @return - id of the cell, or null if the row has no such column.
+   */
+  String _getCellId(int column, int row) {
+    QuipCell cell = _rows[row].getCell(column);
+    return (cell == null) ? null : cell.getId();
+  }
+
+  String[] _getRowHtml(int row) {
+    QuipRow current = _rows[row];
+    String[] values = new String[current.getCellSize()];
+    for (int column = 0; column < values.length; column++)
+      values[column] = current.getCell(column).getHtml();
+    return values;
+  }
+
+  static String _makeRowHtml(String[] values) {
+    StringBuilder sb = new StringBuilder(64);
+    new QuipTableWriter(sb, false)._writeRowUnchecked(values);
     return sb.toString();
   }
 
@@ -179,7 +348,7 @@ public class QuipTable {
       Element row = rows.get(rowIndex);
       QuipCell[] cells = row.getElementsByTag("td").stream()
           .filter(e -> e.hasAttr("id"))
-          .map(e -> new QuipCell(e.attr("id"), e.text()))
+          .map(e -> new QuipCell(e.attr("id"), e.text(), e.html()))
           .toArray(QuipCell[]::new);
       table._rows[rowIndex] = new QuipRow(row.attr("id"), cells);
     }
@@ -217,6 +386,10 @@ class QuipRow {
     return _id;
   }
 
+  int getCellSize() {
+    return _cells.length;
+  }
+
   QuipCell getCell(int column) {
     if (column < 0 || column >= _cells.length)
       return null;
@@ -227,10 +400,12 @@ class QuipRow {
 class QuipCell {
   private final String _id;
   private final String _value;
+  private final String _html;
 
-  QuipCell(String id, String value) {
+  QuipCell(String id, String value, String html) {
     _id = id;
     _value = value;
+    _html = html;
   }
 
   String getId() {
@@ -240,4 +415,8 @@ class QuipCell {
   String getValue() {
     return _value;
   }
+
+  String getHtml() {
+    return _html;
+  }
 }
\ No newline at end of file
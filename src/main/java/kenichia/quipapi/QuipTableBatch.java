@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cell writes and row edits on a {@link QuipTable}, sent together.
+ * <p>
+ * Row and column indexes refer to the table as it was when the batch was
+ * started. On {@link #commit()} every touched row costs one
+ * {@code edit-document} call: a single changed cell is replaced on its own,
+ * a row with more changes is rewritten as a whole together with the rows
+ * inserted before it, and appended rows are added in one call after the
+ * last row. The table is refreshed once at the end.
+ */
+public class QuipTableBatch {
+
+  private final QuipTable _table;
+  private final int _rowSize;
+  // row -> column -> html
+  private final Map<Integer, Map<Integer, String>> _cellValues = new TreeMap<>();
+  private final Map<Integer, List<String[]>> _inserts = new HashMap<>();
+  private final List<String[]> _appends = new ArrayList<>();
+  private final boolean[] _isRemoved;
+  private boolean _isCommitted;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  QuipTableBatch(QuipTable table) {
+    _table = table;
+    _rowSize = table.getRowSize();
+    _isRemoved = new boolean[_rowSize];
+  }
+
+  // ============================================
+  // Edit
+  // ============================================
+
+  public QuipTableBatch updateCellValue(int column, int row, String value) {
+    _checkRow(row);
+    if (_table._getCellId(column, row) == null)
+      throw new IndexOutOfBoundsException("column: " + column);
+    _cellValues.computeIfAbsent(row, k -> new TreeMap<>()).put(column,
+        (value == null) ? "" : value);
+    return this;
+  }
+
+  /**
+   * Appends a row after the last one.
+   */
+  public QuipTableBatch addRow(String[] values) {
+    _checkOpen();
+    _appends.add(values.clone());
+    return this;
+  }
+
+  /**
+   * Inserts a row before {@code row}.
+   */
+  public QuipTableBatch addRow(int row, String[] values) {
+    _checkRow(row);
+    _inserts.computeIfAbsent(row, k -> new ArrayList<>())
+        .add(values.clone());
+    return this;
+  }
+
+  public QuipTableBatch removeRow(int row) {
+    _checkRow(row);
+    _isRemoved[row] = true;
+    return this;
+  }
+
+  /**
+   * Sends the collected edits and refreshes the table once.
+   *
+   * @return - false if the table has or would be left without rows, or when an edit
+   * was rejected; the edits sent before it stay applied.
+   */
+  public boolean commit() throws Exception {
+    _checkOpen();
+    _isCommitted = true;
+    if (_isEmptied())
+      return false;
+    QuipThread thread = _table._getParentThread();
+    boolean isSucceeded = true;
+    try {
+      for (int row = 0; row < _rowSize && isSucceeded; row++)
+        isSucceeded = _commitRow(thread, row);
+    } finally {
+      _table.refresh();
+    }
+    return isSucceeded;
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private boolean _commitRow(QuipThread thread, int row) throws Exception {
+    String rowId = _table._getRowId(row);
+    Map<Integer, String> cells = _cellValues.get(row);
+    List<String[]> inserts = _inserts.get(row);
+    boolean isLast = (row == _rowSize - 1);
+    List<String[]> after = isLast ? _appends : List.of();
+    if (!_isRemoved[row] && inserts == null && after.isEmpty()) {
+      if (cells == null)
+        return true;
+      if (cells.size() == 1) {
+        Map.Entry<Integer, String> cell = cells.entrySet().iterator().next();
+        return thread.editDocument(cell.getValue(), QuipThread.Format.HTML,
+            QuipThread.Location.REPLACE_SECTION,
+            _table._getCellId(cell.getKey(), row));
+      }
+    }
+    if (_isRemoved[row] && inserts == null && after.isEmpty())
+      return thread.editDocument(null, QuipThread.Format.HTML,
+          QuipThread.Location.DELETE_SECTION, rowId);
+
+    StringBuilder html = new StringBuilder();
+    if (inserts != null)
+      inserts.forEach(values -> html.append(QuipTable._makeRowHtml(values)));
+    if (!_isRemoved[row]) {
+      if (cells == null && inserts != null && after.isEmpty())
+        return thread.editDocument(html.toString(), QuipThread.Format.HTML,
+            QuipThread.Location.BEFORE_SECTION, rowId);
+      if (cells == null && inserts == null)
+        return thread.editDocument(_rowsHtml(after), QuipThread.Format.HTML,
+            QuipThread.Location.AFTER_SECTION, rowId);
+      html.append(QuipTable._makeRowHtml(_merge(_table._getRowHtml(row),
+          cells)));
+    }
+    html.append(_rowsHtml(after));
+    return thread.editDocument(html.toString(), QuipThread.Format.HTML,
+        QuipThread.Location.REPLACE_SECTION, rowId);
+  }
+
+  private static String[] _merge(String[] values, Map<Integer, String> cells) {
+    if (cells != null)
+      cells.forEach((column, value) -> values[column] = value);
+    return values;
+  }
+
+  private static String _rowsHtml(List<String[]> rows) {
+    StringBuilder html = new StringBuilder();
+    QuipTableWriter writer = new QuipTableWriter(html, false);
+    rows.forEach(writer::_writeRowUnchecked);
+    return html.toString();
+  }
+
+  private boolean _isEmptied() {
+    if (_rowSize == 0)
+      return true;
+    if (!_appends.isEmpty() || !_inserts.isEmpty())
+      return false;
+    for (boolean isRemoved : _isRemoved)
+      if (!isRemoved)
+        return false;
+    return true;
+  }
+
+  private void _checkRow(int row) {
+    _checkOpen();
+    if (row < 0 || row >= _rowSize)
+      throw new IndexOutOfBoundsException("row: " + row);
+  }
+
+  private void _checkOpen() {
+    if (_isCommitted)
+      throw new IllegalStateException("Batch already committed");
+  }
+}
\ No newline at end of file
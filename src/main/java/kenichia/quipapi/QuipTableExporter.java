@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes tables as CSV or TSV, or cuts them into columnar record batches.
+ * <p>
+ * Rows are read from the thread's parsed html and cell text is copied from
+ * the document's text nodes straight to the writer, with whitespace
+ * collapsed the same way as {@link QuipTable#getCellValue(int, int)}. No
+ * string is built per cell. CSV fields are always quoted so that they can
+ * be written without looking ahead.
+ */
+public class QuipTableExporter {
+
+  // ============================================
+  // Enum
+  // ============================================
+
+  public enum Format {
+    CSV(',', "csv"), TSV('\t', "tsv");
+
+    private final char _separator;
+    private final String _extension;
+
+    private Format(char separator, String extension) {
+      _separator = separator;
+      _extension = extension;
+    }
+  }
+
+  private final Format _format;
+  private final boolean _isHeaderIncluded;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  /**
+   * @param isHeaderIncluded - write the header row of tables that have one.
+   */
+  public QuipTableExporter(Format format, boolean isHeaderIncluded) {
+    _format = Objects.requireNonNull(format);
+    _isHeaderIncluded = isHeaderIncluded;
+  }
+
+  // ============================================
+  // Text export
+  // ============================================
+
+  /**
+   * Writes the table as it is now in the parent thread. The writer is
+   * neither buffered nor closed here.
+   *
+   * @return - false if the table is gone.
+   */
+  public boolean export(QuipTable table, Writer out) throws IOException {
+    Element element = table._getParentThread()._getElementById(table.getId());
+    if (element == null)
+      return false;
+    _export(element, out);
+    return true;
+  }
+
+  /**
+   * Writes every table of the thread, e.g. every sheet of a spreadsheet, to
+   * {@code <table id>.csv} or {@code .tsv} in the directory.
+   *
+   * @return - files written, in document order.
+   */
+  public Path[] export(QuipThread thread, Path directory) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (Element element : _tablesOf(thread)) {
+      Path file = directory
+          .resolve(element.attr("id") + "." + _format._extension);
+      try (Writer out = Files.newBufferedWriter(file,
+          StandardCharsets.UTF_8)) {
+        _export(element, out);
+      }
+      files.add(file);
+    }
+    return files.toArray(Path[]::new);
+  }
+
+  // ============================================
+  // Record batches
+  // ============================================
+
+  /**
+   * Cuts the table into column oriented batches of up to
+   * {@code batchSize} rows, built as the stream is consumed.
+   */
+  public static Stream<QuipColumnarTable> toRecordBatches(QuipTable table,
+      int batchSize) {
+    Element element = table._getParentThread()._getElementById(table.getId());
+    return (element == null) ? Stream.empty()
+        : _toRecordBatches(element, batchSize);
+  }
+
+  /**
+   * Batches of every table of the thread, one table after another.
+   */
+  public static Stream<QuipColumnarTable> toRecordBatches(QuipThread thread,
+      int batchSize) {
+    return _tablesOf(thread).stream()
+        .flatMap(element -> _toRecordBatches(element, batchSize));
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private static Elements _tablesOf(QuipThread thread) {
+    Document document = thread._getDocument();
+    return (document == null) ? new Elements()
+        : document.getElementsByTag("table");
+  }
+
+  private static Stream<QuipColumnarTable> _toRecordBatches(Element element,
+      int batchSize) {
+    if (batchSize <= 0)
+      throw new IllegalArgumentException(
+          "batchSize must be positive: " + batchSize);
+    Elements rows = QuipColumnarTable._rowsOf(element);
+    int batchCount = (rows.size() + batchSize - 1) / batchSize;
+    return IntStream.range(0, batchCount)
+        .mapToObj(i -> new QuipColumnarTable(element, rows, i * batchSize,
+            Math.min(rows.size(), (i + 1) * batchSize)));
+  }
+
+  private void _export(Element table, Writer out) throws IOException {
+    Element header = table.getElementsByTag("thead").first();
+    if (_isHeaderIncluded && header != null)
+      _writeRow(header.getElementsByTag("th"), out);
+    for (Element row : QuipColumnarTable._rowsOf(table))
+      _writeRow(row.getElementsByTag("td"), out);
+  }
+
+  private void _writeRow(Elements cells, Writer out) throws IOException {
+    boolean isFirst = true;
+    for (Element cell : cells) {
+      if (!cell.hasAttr("id"))
+        continue;
+      if (!isFirst)
+        out.write(_format._separator);
+      isFirst = false;
+      if (_format == Format.CSV)
+        out.write('"');
+      new TextCopier(out, _format)._copy(cell);
+      if (_format == Format.CSV)
+        out.write('"');
+    }
+    out.write("\r\n");
+  }
+
+  /**
+   * Copies the text under a cell with runs of whitespace collapsed to one
+   * space and leading and trailing whitespace dropped.
+   */
+  private static class TextCopier {
+    private final Writer _out;
+    private final Format _format;
+    private boolean _isStarted;
+    private boolean _isSpacePending;
+
+    TextCopier(Writer out, Format format) {
+      _out = out;
+      _format = format;
+    }
+
+    void _copy(Node node) throws IOException {
+      if (node instanceof TextNode) {
+        String text = ((TextNode) node).getWholeText();
+        for (int i = 0; i < text.length(); i++)
+          _write(text.charAt(i));
+        return;
+      }
+      boolean isBreak = (node instanceof Element)
+          && (((Element) node).isBlock()
+              || ((Element) node).normalName().equals("br"));
+      if (isBreak)
+        _isSpacePending = true;
+      for (Node child : node.childNodes())
+        _copy(child);
+      if (isBreak)
+        _isSpacePending = true;
+    }
+
+    private void _write(char c) throws IOException {
+      if (Character.isWhitespace(c) || c == '\u00a0') {
+        _isSpacePending = true;
+        return;
+      }
+      if (_isSpacePending && _isStarted)
+        _out.write(' ');
+      _isSpacePending = false;
+      _isStarted = true;
+      if (c == '"' && _format == Format.CSV)
+        _out.write('"');
+      _out.write(c);
+    }
+  }
+}
\ No newline at end of file
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Writes table html straight into an {@link Appendable}.
+ * <p>
+ * Cell values are html escaped unless the writer is created as raw, in
+ * which case they are written as html fragments. The number of UTF-8 bytes
+ * written is tracked so that output can be cut into request sized chunks,
+ * see {@link #rowChunks(Iterator, int, boolean)}.
+ */
+public class QuipTableWriter {
+
+  private final Appendable _out;
+  private final boolean _isEscaped;
+  private long _byteCount;
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  public QuipTableWriter(Appendable out) {
+    this(out, true);
+  }
+
+  /**
+   * @param isEscaped - escape cell values; false writes them as html.
+   */
+  public QuipTableWriter(Appendable out, boolean isEscaped) {
+    _out = Objects.requireNonNull(out);
+    _isEscaped = isEscaped;
+  }
+
+  // ============================================
+  // Properties
+  // ============================================
+
+  /**
+   * @return - UTF-8 size of everything written so far.
+   */
+  public long getByteCount() {
+    return _byteCount;
+  }
+
+  // ============================================
+  // Write
+  // ============================================
+
+  /**
+   * Opens the table and writes the header row, if any.
+   *
+   * @param columnHeaders - header values, or null for a table without one.
+   */
+  public QuipTableWriter writeStart(String[] columnHeaders)
+      throws IOException {
+    _append("<table>");
+    if (columnHeaders != null) {
+      _append("<thead><tr>");
+      for (String header : columnHeaders)
+        _writeCell("th", header);
+      _append("</tr></thead>");
+    }
+    _append("<tbody>");
+    return this;
+  }
+
+  public QuipTableWriter writeRow(String[] values) throws IOException {
+    _append("<tr>");
+    for (String value : values)
+      _writeCell("td", value);
+    _append("</tr>");
+    return this;
+  }
+
+  public QuipTableWriter writeRows(Iterator<String[]> rows)
+      throws IOException {
+    while (rows.hasNext())
+      writeRow(rows.next());
+    return this;
+  }
+
+  public QuipTableWriter writeEnd() throws IOException {
+    _append("</tbody></table>");
+    return this;
+  }
+
+  /**
+   * Writes rows as {@code <tr>} html, cut into chunks of at most
+   * {@code maxBytes} UTF-8 bytes. A single row larger than that becomes a
+   * chunk of its own. Rows are pulled from the iterator as the stream is
+   * consumed, and one builder is reused for all chunks.
+   *
+   * @param maxBytes - upper bound of a chunk, e.g. the request size limit.
+   */
+  public static Stream<String> rowChunks(Iterator<String[]> rows,
+      int maxBytes, boolean isEscaped) {
+    if (maxBytes <= 0)
+      throw new IllegalArgumentException(
+          "maxBytes must be positive: " + maxBytes);
+    Iterator<String> chunks = new Iterator<String>() {
+      private final StringBuilder _buffer = new StringBuilder(
+          Math.min(maxBytes, 1 << 20));
+      private final QuipTableWriter _writer = new QuipTableWriter(_buffer,
+          isEscaped);
+
+      @Override
+      public boolean hasNext() {
+        return rows.hasNext() || _buffer.length() > 0;
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        while (rows.hasNext()) {
+          int mark = _buffer.length();
+          long markBytes = _writer._byteCount;
+          _writer._writeRowUnchecked(rows.next());
+          if (_writer._byteCount > maxBytes && mark > 0) {
+            String chunk = _buffer.substring(0, mark);
+            _buffer.delete(0, mark);
+            _writer._byteCount -= markBytes;
+            return chunk;
+          }
+        }
+        String chunk = _buffer.toString();
+        _buffer.setLength(0);
+        _writer._byteCount = 0;
+        return chunk;
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks,
+        Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  /**
+   * For writers backed by a StringBuilder, which never throws.
+   */
+  void _writeRowUnchecked(String[] values) {
+    try {
+      writeRow(values);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private void _writeCell(String tag, String value) throws IOException {
+    _append('<')._append(tag)._append('>');
+    if (value != null) {
+      if (_isEscaped)
+        _appendEscaped(value);
+      else
+        _append(value);
+    }
+    _append("</")._append(tag)._append('>');
+  }
+
+  private QuipTableWriter _append(char c) throws IOException {
+    _out.append(c);
+    _byteCount++;
+    return this;
+  }
+
+  private QuipTableWriter _append(CharSequence s) throws IOException {
+    _out.append(s);
+    for (int i = 0; i < s.length(); i++)
+      _byteCount += _utf8Length(s.charAt(i));
+    return this;
+  }
+
+  private void _appendEscaped(String s) throws IOException {
+    int start = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      String entity;
+      switch (c) {
+      case '&':
+        entity = "&amp;";
+        break;
+      case '<':
+        entity = "&lt;";
+        break;
+      case '>':
+        entity = "&gt;";
+        break;
+      case '"':
+        entity = "&quot;";
+        break;
+      default:
+        _byteCount += _utf8Length(c);
+        continue;
+      }
+      _out.append(s, start, i);
+      _out.append(entity);
+      _byteCount += entity.length();
+      start = i + 1;
+    }
+    _out.append(s, start, s.length());
+  }
+
+  /**
+   * A surrogate pair counts 2 + 2 for its 4 byte encoding.
+   */
+  private static int _utf8Length(char c) {
+    if (c < 0x80)
+      return 1;
+    if (c < 0x800 || Character.isSurrogate(c))
+      return 2;
+    return 3;
+  }
+}
\ No newline at end of file
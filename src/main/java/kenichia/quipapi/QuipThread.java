@@ -23,15 +23,30 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.message.BasicNameValuePair;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -128,6 +143,19 @@ public class QuipThread extends QuipJsonObject {
 
     ;
 
+    // parsed from getHtml() on first use; guarded by this
+    // memoized field slots, see QuipJsonObject
+    private static final int CREATED_USEC_SLOT = 0;
+    private static final int UPDATED_USEC_SLOT = 1;
+    private static final int SHARED_FOLDER_IDS_SLOT = 2;
+    private static final int USER_IDS_SLOT = 3;
+    private static final int EXPANDED_USER_IDS_SLOT = 4;
+
+    private Document _document;
+    private Map<String, Element> _elementsById;
+    // set while the payload was read without html
+    private volatile boolean _isHtmlDeferred;
+
     // ============================================
     // Constructor
     // ============================================
@@ -136,6 +164,10 @@ public class QuipThread extends QuipJsonObject {
         super(json);
     }
 
+    protected QuipThread(QuipClient client, JsonObject json) {
+        super(client, json);
+    }
+
     // ============================================
     // Properties
     // ============================================
@@ -153,11 +185,11 @@ public class QuipThread extends QuipJsonObject {
     }
 
     public Instant getCreatedUsec() {
-        return _getInstant("thread", "created_usec");
+        return _getInstant(CREATED_USEC_SLOT, "thread", "created_usec");
     }
 
     public Instant getUpdatedUsec() {
-        return _getInstant("thread", "updated_usec");
+        return _getInstant(UPDATED_USEC_SLOT, "thread", "updated_usec");
     }
 
     public String getSharing() {
@@ -176,19 +208,36 @@ public class QuipThread extends QuipJsonObject {
         return _getBoolean("thread", "is_deleted");
     }
 
+    /**
+     * @return - folder ids; the array is shared between calls and must not be
+     * modified.
+     */
     public String[] getSharedFolderIds() {
-        return _getStringArray("shared_folder_ids");
+        return _getStringArray(SHARED_FOLDER_IDS_SLOT, "shared_folder_ids");
     }
 
+    /**
+     * @return - user ids; the array is shared between calls and must not be
+     * modified.
+     */
     public String[] getUserIds() {
-        return _getStringArray("user_ids");
+        return _getStringArray(USER_IDS_SLOT, "user_ids");
     }
 
+    /**
+     * @return - user ids; the array is shared between calls and must not be
+     * modified.
+     */
     public String[] getExpandedUserIds() {
-        return _getStringArray("expanded_user_ids");
+        return _getStringArray(EXPANDED_USER_IDS_SLOT, "expanded_user_ids");
     }
 
+    /**
+     * For a thread read without its html, fetches the html on first call.
+     */
     public String getHtml() {
+        if (_isHtmlDeferred)
+            _loadHtml();
         return _getString("html");
     }
 
@@ -201,27 +250,198 @@ public class QuipThread extends QuipJsonObject {
     // ============================================
 
     public static QuipThread getThread(String threadId) throws Exception {
-        return new QuipThread(
-                _getToJsonObject(QuipAccess.ENDPOINT + "/threads/" + threadId));
+        return getThread(QuipClient._getDefault(), threadId);
+    }
+
+    public static QuipThread getThread(QuipClient client, String threadId)
+            throws Exception {
+        JsonObject cached = client._getCached(QuipCache.THREAD, threadId);
+        if (cached == null)
+            cached = _revalidateSnapshot(client, threadId);
+        if (cached != null)
+            return new QuipThread(client, cached);
+        QuipDataLoader loader = client._getThreadLoader();
+        QuipThread thread = new QuipThread(client, (loader != null)
+                ? loader._get(threadId)
+                : _getToJsonObject(client, QuipAccess.ENDPOINT + "/threads/" + threadId));
+        thread._cachePut(threadId);
+        return thread;
     }
 
     public static QuipThread[] getThreads(String[] threadIds) throws Exception {
-        JsonObject json = _getToJsonObject(
+        return getThreads(QuipClient._getDefault(), threadIds);
+    }
+
+    public static QuipThread[] getThreads(QuipClient client, String[] threadIds)
+            throws Exception {
+        return getThreads(client, threadIds, null);
+    }
+
+    public static QuipThread[] getThreads(String[] threadIds, String[] fields)
+            throws Exception {
+        return getThreads(QuipClient._getDefault(), threadIds, fields);
+    }
+
+    /**
+     * Fetches threads, decoding the response as it arrives and keeping only
+     * the requested top level fields of each thread.
+     *
+     * @param fields - top level fields to keep, e.g. {@code "user_ids"} or
+     *               {@code "html"}; {@code "thread"} is always kept. null
+     *               keeps all fields. Without {@code "html"}, the html is
+     *               fetched on the first {@link #getHtml()}.
+     */
+    public static QuipThread[] getThreads(QuipClient client, String[] threadIds,
+                                          String[] fields) throws Exception {
+        boolean isHtmlDeferred = (fields != null)
+                && !Arrays.asList(fields).contains("html");
+        return _getThreads(client, threadIds, _fieldFilter(fields, "thread"),
+                isHtmlDeferred);
+    }
+
+    public static QuipThread getThreadMetadata(String threadId)
+            throws Exception {
+        return getThreadMetadata(QuipClient._getDefault(), threadId);
+    }
+
+    /**
+     * Reads a thread without its html, which is skipped while the response
+     * is decoded and fetched on the first {@link #getHtml()}. A copy cached
+     * by the client is returned as is.
+     */
+    public static QuipThread getThreadMetadata(QuipClient client,
+                                               String threadId) throws Exception {
+        JsonObject cached = client._getCached(QuipCache.THREAD, threadId);
+        if (cached != null)
+            return new QuipThread(client, cached);
+        return _getToEntity(client,
+                new URI(QuipAccess.ENDPOINT + "/threads/" + threadId),
+                QuipJsonDecoder._excluding("html"),
+                json -> new QuipThread(client, json)._deferHtml());
+    }
+
+    public static QuipThread[] getThreadsMetadata(String[] threadIds)
+            throws Exception {
+        return getThreadsMetadata(QuipClient._getDefault(), threadIds);
+    }
+
+    /**
+     * Reads threads without their html, in requests of at most the client's
+     * bulk chunk size. See {@link #getThreadMetadata(QuipClient, String)}.
+     */
+    public static QuipThread[] getThreadsMetadata(QuipClient client,
+                                                  String[] threadIds) throws Exception {
+        String[] distinct = Stream.of(threadIds).distinct()
+                .toArray(String[]::new);
+        int chunkSize = client._getBulkChunkSize();
+        List<QuipThread> threads = new ArrayList<>();
+        for (int i = 0; i < distinct.length; i += chunkSize) {
+            QuipThread[] chunk = _getThreads(client, Arrays.copyOfRange(
+                    distinct, i, Math.min(distinct.length, i + chunkSize)),
+                    QuipJsonDecoder._excluding("html"), true);
+            if (chunk != null)
+                threads.addAll(Arrays.asList(chunk));
+        }
+        return threads.toArray(QuipThread[]::new);
+    }
+
+    private static QuipThread[] _getThreads(QuipClient client,
+                                            String[] threadIds, Predicate<String> fields, boolean isHtmlDeferred)
+            throws Exception {
+        Map<String, QuipThread> threads = _getToEntityMap(client,
                 new URIBuilder(QuipAccess.ENDPOINT + "/threads/")
                         .addParameter("ids",
                                 Stream.of(threadIds)
                                         .collect(Collectors.joining(",")))
-                        .build());
-        return json.keySet().stream()
-                .map(id -> new QuipThread(json.get(id).getAsJsonObject()))
-                .toArray(QuipThread[]::new);
+                        .build(),
+                fields, json -> isHtmlDeferred
+                        ? new QuipThread(client, json)._deferHtml()
+                        : new QuipThread(client, json));
+        if (threads == null)
+            return null;
+        return threads.values().toArray(QuipThread[]::new);
+    }
+
+    public static CompletableFuture<QuipThread> getThreadAsync(
+            String threadId) {
+        return getThreadAsync(QuipClient._getDefault(), threadId);
+    }
+
+    public static CompletableFuture<QuipThread> getThreadAsync(
+            QuipClient client, String threadId) {
+        JsonObject cached = client._getCached(QuipCache.THREAD, threadId);
+        if (cached != null)
+            return CompletableFuture
+                    .completedFuture(new QuipThread(client, cached));
+        QuipDataLoader loader = client._getThreadLoader();
+        return ((loader != null)
+                ? loader._load(threadId)
+                : _getToJsonObjectAsync(client, QuipAccess.ENDPOINT + "/threads/" + threadId))
+                .thenApply(json -> {
+                    QuipThread thread = new QuipThread(client, json);
+                    thread._cachePut(threadId);
+                    return thread;
+                });
+    }
+
+    public static CompletableFuture<QuipThread[]> getThreadsAsync(
+            String[] threadIds) throws Exception {
+        return getThreadsAsync(QuipClient._getDefault(), threadIds);
+    }
+
+    public static CompletableFuture<QuipThread[]> getThreadsAsync(
+            QuipClient client, String[] threadIds) throws Exception {
+        return _getToJsonObjectAsync(client,
+                new URIBuilder(QuipAccess.ENDPOINT + "/threads/")
+                        .addParameter("ids",
+                                Stream.of(threadIds)
+                                        .collect(Collectors.joining(",")))
+                        .build())
+                .thenApply(json -> json.keySet().stream()
+                        .map(id -> new QuipThread(client, json.get(id).getAsJsonObject()))
+                        .toArray(QuipThread[]::new));
+    }
+
+    /**
+     * Fetches any number of threads by splitting the ids into chunks that are
+     * requested concurrently. Threads that could not be fetched are reported
+     * in {@link QuipBulkResult#getFailures()}.
+     *
+     * @param threadIds - thread ids; results are matched to them by the keys
+     *                  of the bulk response, so secret paths are reported as
+     *                  failures.
+     * @return - threads in the order of {@code threadIds}.
+     */
+    public static QuipBulkResult<QuipThread> getThreadsBulk(String[] threadIds) {
+        return getThreadsBulk(QuipClient._getDefault(), threadIds);
+    }
+
+    public static QuipBulkResult<QuipThread> getThreadsBulk(QuipClient client,
+                                                            String[] threadIds) {
+        return getThreadsBulkAsync(client, threadIds).join();
+    }
+
+    public static CompletableFuture<QuipBulkResult<QuipThread>> getThreadsBulkAsync(
+            String[] threadIds) {
+        return getThreadsBulkAsync(QuipClient._getDefault(), threadIds);
+    }
+
+    public static CompletableFuture<QuipBulkResult<QuipThread>> getThreadsBulkAsync(
+            QuipClient client, String[] threadIds) {
+        return _getBulkAsync(client, QuipAccess.ENDPOINT + "/threads/",
+                threadIds, json -> new QuipThread(client, json));
     }
 
     public static QuipThread[] getRecentThreads() throws Exception {
-        JsonObject json = _getToJsonObject(
+        return getRecentThreads(QuipClient._getDefault());
+    }
+
+    public static QuipThread[] getRecentThreads(QuipClient client)
+            throws Exception {
+        JsonObject json = _getToJsonObject(client,
                 QuipAccess.ENDPOINT + "/threads/recent");
         return json.entrySet().stream()
-                .map(obj -> new QuipThread((JsonObject) obj.getValue()))
+                .map(obj -> new QuipThread(client, (JsonObject) obj.getValue()))
                 .toArray(QuipThread[]::new);
     }
 
@@ -234,6 +454,11 @@ public class QuipThread extends QuipJsonObject {
      * @throws Exception - 403,401,404,500
      */
     public static QuipThread[] getRecentThreads(Integer count, Instant maxUpdatedUsec, boolean includeHidden) throws Exception {
+        return getRecentThreads(QuipClient._getDefault(), count,
+                maxUpdatedUsec, includeHidden);
+    }
+
+    public static QuipThread[] getRecentThreads(QuipClient client, Integer count, Instant maxUpdatedUsec, boolean includeHidden) throws Exception {
         URIBuilder uriBuilder = new URIBuilder(QuipAccess.ENDPOINT + "/threads/recent");
         if (Objects.nonNull(count) && count > 0) {
             uriBuilder.addParameter("count", String.valueOf(count));
@@ -244,14 +469,62 @@ public class QuipThread extends QuipJsonObject {
                     maxUpdatedUsec)));
         }
 
-        JsonObject json = _getToJsonObject(uriBuilder.addParameter("include_hidden", String.valueOf(includeHidden)).build());
+        JsonObject json = _getToJsonObject(client, uriBuilder.addParameter("include_hidden", String.valueOf(includeHidden)).build());
         return json.entrySet().stream()
-                .map(obj -> new QuipThread((JsonObject) obj.getValue()))
+                .map(obj -> new QuipThread(client, (JsonObject) obj.getValue()))
                 .toArray(QuipThread[]::new);
     }
 
+    /**
+     * Streams the most recently updated threads, newest first, fetching one
+     * page of {@code pageSize} threads at a time as the stream is consumed.
+     *
+     * @param pageSize       - threads requested per page.
+     * @param maxUpdatedUsec - newest update to start from, or null.
+     * @param includeHidden  - include hidden chats.
+     * @param isPrefetch     - request the next page while the current one is
+     *                       being consumed.
+     * @return - lazily paginated stream; close it to cancel a prefetched page.
+     */
+    public static Stream<QuipThread> streamRecentThreads(int pageSize,
+                                                         Instant maxUpdatedUsec, boolean includeHidden, boolean isPrefetch) {
+        return streamRecentThreads(QuipClient._getDefault(), pageSize,
+                maxUpdatedUsec, includeHidden, isPrefetch);
+    }
+
+    public static Stream<QuipThread> streamRecentThreads(QuipClient client,
+                                                         int pageSize, Instant maxUpdatedUsec, boolean includeHidden,
+                                                         boolean isPrefetch) {
+        return new QuipPageIterator<QuipThread>(cursor -> {
+            URI uri;
+            try {
+                URIBuilder uriBuilder = new URIBuilder(QuipAccess.ENDPOINT + "/threads/recent")
+                        .addParameter("count", String.valueOf(pageSize))
+                        .addParameter("include_hidden", String.valueOf(includeHidden));
+                if (cursor != null)
+                    uriBuilder.addParameter("max_updated_usec", String.valueOf(
+                            ChronoUnit.MICROS.between(Instant.EPOCH, cursor)));
+                uri = uriBuilder.build();
+            } catch (URISyntaxException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return _getToJsonObjectAsync(client, uri)
+                    .thenApply(json -> json.entrySet().stream()
+                            .map(obj -> new QuipThread(client, (JsonObject) obj.getValue()))
+                            .collect(Collectors.toCollection(ArrayList::new)));
+        }, QuipThread::getUpdatedUsec, QuipThread::getId, pageSize,
+                maxUpdatedUsec, isPrefetch)
+                ._stream();
+    }
+
     public static QuipThread[] searchThreads(String query, Integer count,
                                              Boolean isOnlyMatchTitles) throws Exception {
+        return searchThreads(QuipClient._getDefault(), query, count,
+                isOnlyMatchTitles);
+    }
+
+    public static QuipThread[] searchThreads(QuipClient client, String query,
+                                             Integer count, Boolean isOnlyMatchTitles) throws Exception {
         List<NameValuePair> params = new ArrayList<>();
         params.add(new BasicNameValuePair("query", query));
         if (count != null)
@@ -259,17 +532,26 @@ public class QuipThread extends QuipJsonObject {
         if (isOnlyMatchTitles != null)
             params.add(new BasicNameValuePair("only_match_titles",
                     String.valueOf(isOnlyMatchTitles)));
-        JsonArray arr = _getToJsonArray(
+        JsonArray arr = _getToJsonArray(client,
                 new URIBuilder(QuipAccess.ENDPOINT + "/threads/search")
                         .addParameters(params).build());
         return StreamSupport.stream(arr.spliterator(), false)
-                .map(obj -> new QuipThread(obj.getAsJsonObject()))
+                .map(obj -> new QuipThread(client, obj.getAsJsonObject()))
                 .toArray(QuipThread[]::new);
     }
 
+    /**
+     * Refetches the thread. With a {@link QuipCache} or
+     * {@link QuipSnapshotStore} configured on the client, a copy that is still
+     * fresh is used instead.
+     */
     public boolean reload() throws Exception {
-        JsonObject object = _getToJsonObject(
-                QuipAccess.ENDPOINT + "/threads/" + getId());
+        JsonObject object = _getClient()._getCached(QuipCache.THREAD, getId());
+        if (object == null)
+            object = _revalidateSnapshot(_getClient(), getId());
+        if (object == null)
+            object = _getToJsonObject(_getClient(),
+                    QuipAccess.ENDPOINT + "/threads/" + getId());
         if (object == null)
             return false;
         _replace(object);
@@ -282,6 +564,12 @@ public class QuipThread extends QuipJsonObject {
 
     public static QuipThread createDocument(String title, String content,
                                             String[] memberIds, Format format, Type type) throws Exception {
+        return createDocument(QuipClient._getDefault(), title, content,
+                memberIds, format, type);
+    }
+
+    public static QuipThread createDocument(QuipClient client, String title,
+                                            String content, String[] memberIds, Format format, Type type) throws Exception {
         Form form = Form.form();
         if (title != null)
             form.add("title", title);
@@ -294,12 +582,17 @@ public class QuipThread extends QuipJsonObject {
             form.add("format", format._value);
         if (type != null)
             form.add("type", type._value);
-        return new QuipThread(_postToJsonObject(
+        return new QuipThread(client, _postToJsonObject(client,
                 QuipAccess.ENDPOINT + "/threads/new-document", form));
     }
 
     public static QuipThread createChat(String title, String message,
                                         String[] memberIds) throws Exception {
+        return createChat(QuipClient._getDefault(), title, message, memberIds);
+    }
+
+    public static QuipThread createChat(QuipClient client, String title,
+                                        String message, String[] memberIds) throws Exception {
         Form form = Form.form();
         if (title != null)
             form.add("title", title);
@@ -308,7 +601,7 @@ public class QuipThread extends QuipJsonObject {
         if (memberIds != null)
             form.add("member_ids",
                     Stream.of(memberIds).collect(Collectors.joining(",")));
-        return new QuipThread(_postToJsonObject(
+        return new QuipThread(client, _postToJsonObject(client,
                 QuipAccess.ENDPOINT + "/threads/new-chat", form));
     }
 
@@ -325,7 +618,7 @@ public class QuipThread extends QuipJsonObject {
         if (folderIds != null)
             form.add("folder_ids",
                     Stream.of(folderIds).collect(Collectors.joining(",")));
-        return new QuipThread(_postToJsonObject(
+        return new QuipThread(_getClient(), _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/threads/copy-document", form));
     }
 
@@ -351,7 +644,7 @@ public class QuipThread extends QuipJsonObject {
                     || location == Location.DELETE_DOCUMENT_RANGE)
                 form.add("document_range", sectionIdOrDocumentRange);
         }
-        JsonObject object = _postToJsonObject(
+        JsonObject object = _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/threads/edit-document", form);
         if (object == null)
             return false;
@@ -395,7 +688,7 @@ public class QuipThread extends QuipJsonObject {
                         destinationSectionIdOrDocumentRange);
         if (isUpdateAutomatic != null)
             form.add("update_automatic", String.valueOf(isUpdateAutomatic));
-        JsonObject object = _postToJsonObject(
+        JsonObject object = _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/threads/live-paste", form);
         if (object == null)
             return false;
@@ -404,8 +697,9 @@ public class QuipThread extends QuipJsonObject {
     }
 
     public void delete() throws Exception {
-        _postToJsonObject(QuipAccess.ENDPOINT + "/threads/delete",
+        _postToJsonObject(_getClient(), QuipAccess.ENDPOINT + "/threads/delete",
                 Form.form().add("thread_id", getId()));
+        _cacheInvalidate();
     }
 
     // ============================================
@@ -413,17 +707,19 @@ public class QuipThread extends QuipJsonObject {
     // ============================================
 
     public void lockEdits(Boolean isEditsDisabled) throws Exception {
-        _postToJsonObject(QuipAccess.ENDPOINT + "/threads/lock-edits",
+        _postToJsonObject(_getClient(), QuipAccess.ENDPOINT + "/threads/lock-edits",
                 Form.form().add("thread_id", getId()).add("edits_disabled",
                         String.valueOf(isEditsDisabled)));
+        _cacheInvalidate();
     }
 
     public void lockSectionEdits(String sectionId, Boolean isEditsDisabled)
             throws Exception {
-        _postToJsonObject(QuipAccess.ENDPOINT + "/threads/lock-section-edits",
+        _postToJsonObject(_getClient(), QuipAccess.ENDPOINT + "/threads/lock-section-edits",
                 Form.form().add("thread_id", getId())
                         .add("section_id", sectionId).add("edits_disabled",
                                 String.valueOf(isEditsDisabled)));
+        _cacheInvalidate();
     }
 
     // ============================================
@@ -432,8 +728,80 @@ public class QuipThread extends QuipJsonObject {
 
     public static QuipThread importFile(File file, Type type, String title,
                                         String[] memberIds) throws Exception {
-        MultipartEntityBuilder multipart = MultipartEntityBuilder.create()
-                .addBinaryBody("file", file);
+        return importFile(QuipClient._getDefault(), file, type, title,
+                memberIds);
+    }
+
+    public static QuipThread importFile(QuipClient client, File file,
+                                        Type type, String title, String[] memberIds) throws Exception {
+        return _importFile(client, MultipartEntityBuilder.create()
+                .addBinaryBody("file", file), true, type, title, memberIds);
+    }
+
+    public static QuipThread importFile(Path path, Type type, String title,
+                                        String[] memberIds, QuipUploadListener listener) throws Exception {
+        return importFile(QuipClient._getDefault(), path, type, title,
+                memberIds, listener);
+    }
+
+    public static QuipThread importFile(QuipClient client, Path path,
+                                        Type type, String title, String[] memberIds,
+                                        QuipUploadListener listener) throws Exception {
+        return _importFile(client, QuipUploadBody.of(path, listener), type,
+                title, memberIds);
+    }
+
+    /**
+     * Imports a document streamed from {@code in}. The stream is read once
+     * and is not closed, so the request is not retried on 429 or 503.
+     *
+     * @param in       - file contents.
+     * @param length   - number of bytes, or -1 if unknown.
+     * @param fileName - file name; its extension selects the importer.
+     * @param listener - upload progress callback, or null.
+     */
+    public static QuipThread importFile(InputStream in, long length,
+                                        String fileName, Type type, String title,
+                                        String[] memberIds, QuipUploadListener listener) throws Exception {
+        return importFile(QuipClient._getDefault(), in, length, fileName, type,
+                title, memberIds, listener);
+    }
+
+    public static QuipThread importFile(QuipClient client, InputStream in,
+                                        long length, String fileName, Type type, String title,
+                                        String[] memberIds, QuipUploadListener listener) throws Exception {
+        return _importFile(client,
+                QuipUploadBody.of(in, length, fileName, listener), type, title,
+                memberIds);
+    }
+
+    public static QuipThread importFile(ReadableByteChannel channel,
+                                        long length, String fileName, Type type, String title,
+                                        String[] memberIds, QuipUploadListener listener) throws Exception {
+        return importFile(QuipClient._getDefault(), channel, length, fileName,
+                type, title, memberIds, listener);
+    }
+
+    public static QuipThread importFile(QuipClient client,
+                                        ReadableByteChannel channel, long length, String fileName,
+                                        Type type, String title, String[] memberIds,
+                                        QuipUploadListener listener) throws Exception {
+        return _importFile(client,
+                QuipUploadBody.of(channel, length, fileName, listener), type,
+                title, memberIds);
+    }
+
+    private static QuipThread _importFile(QuipClient client,
+                                          QuipUploadBody body, Type type, String title, String[] memberIds)
+            throws Exception {
+        return _importFile(client,
+                MultipartEntityBuilder.create().addPart("file", body),
+                body._isRepeatable(), type, title, memberIds);
+    }
+
+    private static QuipThread _importFile(QuipClient client,
+                                          MultipartEntityBuilder multipart, boolean isRepeatable, Type type,
+                                          String title, String[] memberIds) throws Exception {
         if (type != null)
             multipart.addTextBody("type", type._value);
         if (title != null)
@@ -441,23 +809,67 @@ public class QuipThread extends QuipJsonObject {
         if (memberIds != null)
             multipart.addTextBody("member_ids",
                     Stream.of(memberIds).collect(Collectors.joining(",")));
-        return new QuipThread(_postToJsonObject(
-                QuipAccess.ENDPOINT + "/threads/import-file", multipart));
+        return new QuipThread(client, _postToJsonObject(client,
+                QuipAccess.ENDPOINT + "/threads/import-file", multipart,
+                isRepeatable));
     }
 
     public byte[] exportAsDocx() throws Exception {
-        return _getToByteArray(
-                QuipAccess.ENDPOINT + "/threads/" + getId() + "/export/docx");
+        return _getToByteArray(_getClient(), _exportUri("docx"));
+    }
+
+    /**
+     * Streams the docx export to {@code out} without holding it in memory.
+     *
+     * @param out - destination, left open.
+     * @return - number of bytes written.
+     */
+    public long exportAsDocx(OutputStream out) throws Exception {
+        return _getToOutputStream(_getClient(), _exportUri("docx"), out);
+    }
+
+    public long exportAsDocx(Path path) throws Exception {
+        return _getToPath(_getClient(), _exportUri("docx"), path);
+    }
+
+    public long exportAsDocx(WritableByteChannel channel) throws Exception {
+        return _getToChannel(_getClient(), _exportUri("docx"), channel);
     }
 
     public byte[] exportAsXlsx() throws Exception {
-        return _getToByteArray(
-                QuipAccess.ENDPOINT + "/threads/" + getId() + "/export/xlsx");
+        return _getToByteArray(_getClient(), _exportUri("xlsx"));
+    }
+
+    public long exportAsXlsx(OutputStream out) throws Exception {
+        return _getToOutputStream(_getClient(), _exportUri("xlsx"), out);
+    }
+
+    public long exportAsXlsx(Path path) throws Exception {
+        return _getToPath(_getClient(), _exportUri("xlsx"), path);
+    }
+
+    public long exportAsXlsx(WritableByteChannel channel) throws Exception {
+        return _getToChannel(_getClient(), _exportUri("xlsx"), channel);
     }
 
     public byte[] exportAsPdf() throws Exception {
-        return _getToByteArray(
-                QuipAccess.ENDPOINT + "/threads/" + getId() + "/export/pdf");
+        return _getToByteArray(_getClient(), _exportUri("pdf"));
+    }
+
+    public long exportAsPdf(OutputStream out) throws Exception {
+        return _getToOutputStream(_getClient(), _exportUri("pdf"), out);
+    }
+
+    public long exportAsPdf(Path path) throws Exception {
+        return _getToPath(_getClient(), _exportUri("pdf"), path);
+    }
+
+    public long exportAsPdf(WritableByteChannel channel) throws Exception {
+        return _getToChannel(_getClient(), _exportUri("pdf"), channel);
+    }
+
+    private String _exportUri(String format) {
+        return QuipAccess.ENDPOINT + "/threads/" + getId() + "/export/" + format;
     }
 
     public String createExportPdfRequest(String destinationThreadId)
@@ -465,7 +877,7 @@ public class QuipThread extends QuipJsonObject {
         Form form = Form.form();
         if (destinationThreadId != null)
             form.add("destination_thread_id", destinationThreadId);
-        JsonObject json = _postToJsonObject(QuipAccess.ENDPOINT + "/threads/"
+        JsonObject json = _postToJsonObject(_getClient(), QuipAccess.ENDPOINT + "/threads/"
                 + getId() + "/export/pdf/async", form);
         return json.get("request_id").getAsString();
     }
@@ -474,7 +886,7 @@ public class QuipThread extends QuipJsonObject {
         List<NameValuePair> params = new ArrayList<>();
         if (requestId != null)
             params.add(new BasicNameValuePair("request_id", requestId));
-        JsonObject json = _getToJsonObject(
+        JsonObject json = _getToJsonObject(_getClient(),
                 new URIBuilder(QuipAccess.ENDPOINT + "/threads/" + getId()
                         + "/export/pdf/async").addParameters(params).build());
         return (json.get("status").getAsString().equals("SUCCESS")
@@ -490,7 +902,17 @@ public class QuipThread extends QuipJsonObject {
     public QuipMessage[] getRecentMessages(Integer count,
                                            Instant maxCreatedUsec, MessageType messageType) throws Exception {
         return QuipMessage
-                .getRecentMessages(getId(), count, maxCreatedUsec, null, null, SortedBy.NONE, messageType);
+                .getRecentMessages(_getClient(), getId(), count, maxCreatedUsec, null, null, SortedBy.NONE, messageType);
+    }
+
+    /**
+     * @see QuipMessage#streamRecentMessages(QuipClient, String, int, Instant,
+     * MessageType, boolean)
+     */
+    public Stream<QuipMessage> streamRecentMessages(int pageSize,
+                                                    MessageType messageType, boolean isPrefetch) {
+        return QuipMessage.streamRecentMessages(_getClient(), getId(),
+                pageSize, null, messageType, isPrefetch);
     }
 
     public QuipMessage addMessage(Frame frame, String content, String parts,
@@ -512,8 +934,12 @@ public class QuipThread extends QuipJsonObject {
             form.add("annotation_id", annotationId);
         if (sectionId != null)
             form.add("section_id", sectionId);
-        return new QuipMessage(
-                _postToJsonObject(QuipAccess.ENDPOINT + "/messages/new", form));
+        QuipMessage message = new QuipMessage(_getClient(),
+                _postToJsonObject(_getClient(), QuipAccess.ENDPOINT + "/messages/new", form));
+        QuipCache cache = _getClient().getCache();
+        if (cache != null)
+            cache.invalidateMessages(getId());
+        return message;
     }
 
     // ============================================
@@ -521,15 +947,60 @@ public class QuipThread extends QuipJsonObject {
     // ============================================
 
     public byte[] getBlob(String blobId) throws Exception {
-        return QuipBlob.getBlob(getId(), blobId);
+        return QuipBlob.getBlob(_getClient(), getId(), blobId);
+    }
+
+    public long getBlob(String blobId, OutputStream out) throws Exception {
+        return QuipBlob.getBlob(_getClient(), getId(), blobId, out);
+    }
+
+    public long getBlob(String blobId, Path path) throws Exception {
+        return QuipBlob.getBlob(_getClient(), getId(), blobId, path);
+    }
+
+    public long getBlob(String blobId, WritableByteChannel channel)
+            throws Exception {
+        return QuipBlob.getBlob(_getClient(), getId(), blobId, channel);
     }
 
     public QuipBlob addBlob(File file) throws Exception {
-        return new QuipBlob(_postToJsonObject(
+        return new QuipBlob(_getClient(), _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/blob/" + getId(),
                 MultipartEntityBuilder.create().addBinaryBody("blob", file)));
     }
 
+    public QuipBlob addBlob(Path path, QuipUploadListener listener)
+            throws Exception {
+        return _addBlob(QuipUploadBody.of(path, listener));
+    }
+
+    /**
+     * Uploads a blob streamed from {@code in}. The stream is read once and is
+     * not closed, so the request is not retried on 429 or 503.
+     *
+     * @param in       - blob contents.
+     * @param length   - number of bytes, or -1 if unknown.
+     * @param fileName - file name sent with the blob.
+     * @param listener - upload progress callback, or null.
+     */
+    public QuipBlob addBlob(InputStream in, long length, String fileName,
+                            QuipUploadListener listener) throws Exception {
+        return _addBlob(QuipUploadBody.of(in, length, fileName, listener));
+    }
+
+    public QuipBlob addBlob(ReadableByteChannel channel, long length,
+                            String fileName, QuipUploadListener listener) throws Exception {
+        return _addBlob(
+                QuipUploadBody.of(channel, length, fileName, listener));
+    }
+
+    private QuipBlob _addBlob(QuipUploadBody body) throws Exception {
+        return new QuipBlob(_getClient(), _postToJsonObject(_getClient(),
+                QuipAccess.ENDPOINT + "/blob/" + getId(),
+                MultipartEntityBuilder.create().addPart("blob", body),
+                body._isRepeatable()));
+    }
+
     // ============================================
     // Members
     // ============================================
@@ -539,7 +1010,7 @@ public class QuipThread extends QuipJsonObject {
     }
 
     public boolean addMembers(String[] folderOrUserIds) throws Exception {
-        JsonObject object = _postToJsonObject(
+        JsonObject object = _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/threads/add-members",
                 Form.form().add("thread_id", getId()).add("member_ids", Stream
                         .of(folderOrUserIds).collect(Collectors.joining(","))));
@@ -554,7 +1025,7 @@ public class QuipThread extends QuipJsonObject {
     }
 
     public boolean removeMembers(String[] folderOrUserIds) throws Exception {
-        JsonObject object = _postToJsonObject(
+        JsonObject object = _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/folders/remove-members",
                 Form.form().add("thread_id", getId()).add("member_ids", Stream
                         .of(folderOrUserIds).collect(Collectors.joining(","))));
@@ -585,7 +1056,7 @@ public class QuipThread extends QuipJsonObject {
         if (enableRequestAccess != null)
             form.add("enable_request_access",
                     String.valueOf(enableRequestAccess));
-        JsonObject json = _postToJsonObject(
+        JsonObject json = _postToJsonObject(_getClient(),
                 QuipAccess.ENDPOINT + "/threads/edit-share-link-settings",
                 form);
         return json.get(getId()).getAsString().equals("success");
@@ -596,12 +1067,10 @@ public class QuipThread extends QuipJsonObject {
     // ============================================
 
     public String[] getTableIds() {
-        String html = getHtml();
-        if (html == null)
-            return null;
-        Elements tables = Jsoup.parse(html).getElementsByTag("table");
-        if (tables == null)
+        Document document = _getDocument();
+        if (document == null)
             return null;
+        Elements tables = document.getElementsByTag("table");
         return tables.stream().map(e -> e.attr("id")).toArray(String[]::new);
     }
 
@@ -613,10 +1082,121 @@ public class QuipThread extends QuipJsonObject {
     }
 
     Element getTableElementById_(String tableId) {
-        String html = getHtml();
-        if (html == null)
+        return _getElementById(tableId);
+    }
+
+    // ============================================
+    // Parsed document
+    // ============================================
+
+    /**
+     * @return - the html parsed once per payload, or null without html. The
+     * returned tree is shared and must not be modified.
+     */
+    synchronized Document _getDocument() {
+        if (_document == null) {
+            String html = getHtml();
+            if (html == null)
+                return null;
+            _document = Jsoup.parse(html);
+        }
+        return _document;
+    }
+
+    /**
+     * Looks up a section, table, row or cell by its id.
+     */
+    synchronized Element _getElementById(String id) {
+        if (_elementsById == null) {
+            Document document = _getDocument();
+            if (document == null)
+                return null;
+            Map<String, Element> index = new HashMap<>();
+            for (Element e : document.getElementsByAttribute("id"))
+                index.putIfAbsent(e.attr("id"), e);
+            _elementsById = index;
+        }
+        return _elementsById.get(id);
+    }
+
+    private synchronized void _invalidateDocument() {
+        _document = null;
+        _elementsById = null;
+    }
+
+    // ============================================
+    // Deferred html
+    // ============================================
+
+    /**
+     * Reads the metadata of a thread whose snapshot outlived the client's
+     * maximum age and serves the snapshot again if {@code updated_usec} has
+     * not moved, so the body is fetched only for changed threads.
+     *
+     * @return - the stored payload, or null if there is none or it changed.
+     */
+    private static JsonObject _revalidateSnapshot(QuipClient client,
+                                                  String threadId) throws Exception {
+        if (!client._isSnapshotRevalidatable(QuipCache.THREAD, threadId))
+            return null;
+        QuipThread metadata = _getToEntity(client,
+                new URI(QuipAccess.ENDPOINT + "/threads/" + threadId),
+                QuipJsonDecoder._excluding("html"),
+                json -> new QuipThread(client, json));
+        if (metadata == null)
             return null;
-        return Jsoup.parse(html).getElementsByAttributeValue("id", tableId)
-                .first();
+        return client._revalidateSnapshot(QuipCache.THREAD, threadId,
+                metadata.getUpdatedUsec());
+    }
+
+    private QuipThread _deferHtml() {
+        _isHtmlDeferred = true;
+        return this;
+    }
+
+    /**
+     * Replaces the metadata-only payload with the full thread, taken from
+     * the client's cache when possible. A failed fetch is thrown once and
+     * leaves the html absent.
+     */
+    private synchronized void _loadHtml() {
+        if (!_isHtmlDeferred)
+            return;
+        try {
+            JsonObject object = _getClient()._getCached(QuipCache.THREAD,
+                    getId());
+            if (object == null)
+                object = _getToJsonObject(_getClient(),
+                        QuipAccess.ENDPOINT + "/threads/" + getId());
+            if (object == null)
+                throw new IOException(
+                        "Could not load the html of thread " + getId());
+            _replace(object);
+        } catch (IOException e) {
+            // Not retried on later calls; reload() fetches the thread again
+            _isHtmlDeferred = false;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ============================================
+    // Cache
+    // ============================================
+
+    @Override
+    protected void _replace(JsonObject object) {
+        super._replace(object);
+        _isHtmlDeferred = false;
+        _invalidateDocument();
+        _cachePut(null);
+    }
+
+    private void _cachePut(String requestedId) {
+        _getClient()._putCached(QuipCache.THREAD, requestedId, getId(),
+                _getJsonObject(), getUpdatedUsec());
+    }
+
+    private void _cacheInvalidate() {
+        _getClient()._invalidateCached(QuipCache.THREAD, getId());
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Multipart body that copies its payload straight from the source to the
+ * connection, reporting progress to an optional {@link QuipUploadListener}.
+ * <p>
+ * Stream and channel sources can be written only once, so requests carrying
+ * them are not retried. A {@link Path} is reopened for every attempt.
+ */
+class QuipUploadBody extends AbstractContentBody {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Source _source;
+  private final long _length;
+  private final String _fileName;
+  private final QuipUploadListener _listener;
+  private final boolean _isRepeatable;
+  private boolean _isConsumed;
+
+  @FunctionalInterface
+  private interface Source {
+    InputStream open() throws IOException;
+  }
+
+  // ============================================
+  // Constructor
+  // ============================================
+
+  private QuipUploadBody(Source source, long length, String fileName,
+      QuipUploadListener listener, boolean isRepeatable) {
+    super(ContentType.DEFAULT_BINARY);
+    _source = source;
+    _length = length;
+    _fileName = fileName;
+    _listener = listener;
+    _isRepeatable = isRepeatable;
+  }
+
+  static QuipUploadBody of(InputStream in, long length, String fileName,
+      QuipUploadListener listener) {
+    Objects.requireNonNull(in);
+    return new QuipUploadBody(() -> in, length, fileName, listener, false);
+  }
+
+  static QuipUploadBody of(ReadableByteChannel channel, long length,
+      String fileName, QuipUploadListener listener) {
+    Objects.requireNonNull(channel);
+    return new QuipUploadBody(() -> Channels.newInputStream(channel), length,
+        fileName, listener, false);
+  }
+
+  static QuipUploadBody of(Path path, QuipUploadListener listener)
+      throws IOException {
+    Objects.requireNonNull(path);
+    return new QuipUploadBody(() -> Files.newInputStream(path),
+        Files.size(path), path.getFileName().toString(), listener, true);
+  }
+
+  // ============================================
+  // ContentBody
+  // ============================================
+
+  @Override
+  public String getFilename() {
+    return _fileName;
+  }
+
+  @Override
+  public String getTransferEncoding() {
+    return "binary";
+  }
+
+  @Override
+  public long getContentLength() {
+    return _length;
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    if (!_isRepeatable) {
+      synchronized (this) {
+        if (_isConsumed)
+          throw new IOException("Upload source has already been consumed");
+        _isConsumed = true;
+      }
+    }
+    long sent = 0;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    // Only reopened sources are ours to close
+    InputStream in = _source.open();
+    try {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        sent += read;
+        if (_listener != null)
+          _listener.onProgress(sent, _length);
+      }
+    } finally {
+      if (_isRepeatable)
+        in.close();
+    }
+    out.flush();
+  }
+
+  // ============================================
+  // Package private
+  // ============================================
+
+  boolean _isRepeatable() {
+    return _isRepeatable;
+  }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2021 Kenichi Ando
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package kenichia.quipapi;
+
+/**
+ * Receives progress updates while a file or blob is being uploaded.
+ */
+@FunctionalInterface
+public interface QuipUploadListener {
+
+  /**
+   * @param bytesSent  - bytes of the payload written so far.
+   * @param totalBytes - payload size, or -1 if it is not known in advance.
+   */
+  public void onProgress(long bytesSent, long totalBytes);
+}
\ No newline at end of file
@@ -16,6 +16,8 @@
 package kenichia.quipapi;
 
 import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -28,6 +30,12 @@ import org.apache.http.client.utils.URIBuilder;
 
 public class QuipUser extends QuipJsonObject {
 
+  // memoized field slots, see QuipJsonObject
+  private static final int GROUP_FOLDER_IDS_SLOT = 0;
+  private static final int SHARED_FOLDER_IDS_SLOT = 1;
+  private static final int CREATED_USEC_SLOT = 2;
+  private static final int EMAILS_SLOT = 3;
+
   // ============================================
   // Constructor
   // ============================================
@@ -36,6 +44,10 @@ public class QuipUser extends QuipJsonObject {
     super(json);
   }
 
+  protected QuipUser(QuipClient client, JsonObject json) {
+    super(client, json);
+  }
+
   // ============================================
   // Properties
   // ============================================
@@ -80,12 +92,20 @@ public class QuipUser extends QuipJsonObject {
     return _getString("trash_folder_id");
   }
 
+  /**
+   * @return - folder ids; the array is shared between calls and must not be
+   * modified.
+   */
   public String[] getGroupFolderIds() {
-    return _getStringArray("group_folder_ids");
+    return _getStringArray(GROUP_FOLDER_IDS_SLOT, "group_folder_ids");
   }
 
+  /**
+   * @return - folder ids; the array is shared between calls and must not be
+   * modified.
+   */
   public String[] getSharedFolderIds() {
-    return _getStringArray("shared_folder_ids");
+    return _getStringArray(SHARED_FOLDER_IDS_SLOT, "shared_folder_ids");
   }
 
   public boolean isDisabled() {
@@ -93,11 +113,15 @@ public class QuipUser extends QuipJsonObject {
   }
 
   public Instant getCreatedUsec() {
-    return _getInstant("created_usec");
+    return _getInstant(CREATED_USEC_SLOT, "created_usec");
   }
 
+  /**
+   * @return - emails; the array is shared between calls and must not be
+   * modified.
+   */
   public String[] getEmails() {
-    return _getStringArray("emails");
+    return _getStringArray(EMAILS_SLOT, "emails");
   }
 
   public String getSubDomain() {
@@ -117,36 +141,157 @@ public class QuipUser extends QuipJsonObject {
   // ============================================
 
   public static QuipUser getCurrentUser() throws Exception {
-    return new QuipUser(
-        _getToJsonObject(QuipAccess.ENDPOINT + "/users/current"));
+    return getCurrentUser(QuipClient._getDefault());
+  }
+
+  public static QuipUser getCurrentUser(QuipClient client) throws Exception {
+    return new QuipUser(client,
+        _getToJsonObject(client, QuipAccess.ENDPOINT + "/users/current"));
   }
 
   public static QuipUser getUser(String userIdOrEmail) throws Exception {
-    return new QuipUser(
-        _getToJsonObject(QuipAccess.ENDPOINT + "/users/" + userIdOrEmail));
+    return getUser(QuipClient._getDefault(), userIdOrEmail);
+  }
+
+  public static QuipUser getUser(QuipClient client, String userIdOrEmail)
+      throws Exception {
+    JsonObject cached = client._getCached(QuipCache.USER, userIdOrEmail);
+    if (cached != null)
+      return new QuipUser(client, cached);
+    QuipDataLoader loader = client._getUserLoader();
+    QuipUser user = new QuipUser(client,
+        (loader != null && _isBatchable(userIdOrEmail))
+            ? loader._get(userIdOrEmail)
+            : _getToJsonObject(client,
+                QuipAccess.ENDPOINT + "/users/" + userIdOrEmail));
+    user._cachePut(userIdOrEmail);
+    return user;
   }
 
   public static QuipUser[] getUsers(String[] userIdOrEmails) throws Exception {
-    JsonObject json = _getToJsonObject(
+    return getUsers(QuipClient._getDefault(), userIdOrEmails);
+  }
+
+  public static QuipUser[] getUsers(QuipClient client,
+      String[] userIdOrEmails) throws Exception {
+    return getUsers(client, userIdOrEmails, null);
+  }
+
+  public static QuipUser[] getUsers(String[] userIdOrEmails, String[] fields)
+      throws Exception {
+    return getUsers(QuipClient._getDefault(), userIdOrEmails, fields);
+  }
+
+  /**
+   * Fetches users, decoding the response as it arrives and keeping only the
+   * requested fields of each user.
+   *
+   * @param fields - fields to keep, e.g. {@code "name"} or {@code "emails"};
+   *               {@code "id"} is always kept. null keeps all fields.
+   */
+  public static QuipUser[] getUsers(QuipClient client,
+      String[] userIdOrEmails, String[] fields) throws Exception {
+    Map<String, QuipUser> users = _getToEntityMap(client,
         new URIBuilder(QuipAccess.ENDPOINT + "/users/")
             .addParameter("ids",
                 Stream.of(userIdOrEmails).collect(Collectors.joining(",")))
-            .build());
-    return json.keySet().stream()
-        .map(id -> new QuipUser(json.get(id).getAsJsonObject()))
-        .toArray(QuipUser[]::new);
+            .build(),
+        _fieldFilter(fields, "id"), json -> new QuipUser(client, json));
+    if (users == null)
+      return null;
+    return users.values().toArray(QuipUser[]::new);
+  }
+
+  public static CompletableFuture<QuipUser> getUserAsync(
+      String userIdOrEmail) {
+    return getUserAsync(QuipClient._getDefault(), userIdOrEmail);
+  }
+
+  public static CompletableFuture<QuipUser> getUserAsync(QuipClient client,
+      String userIdOrEmail) {
+    JsonObject cached = client._getCached(QuipCache.USER, userIdOrEmail);
+    if (cached != null)
+      return CompletableFuture.completedFuture(new QuipUser(client, cached));
+    QuipDataLoader loader = client._getUserLoader();
+    return ((loader != null && _isBatchable(userIdOrEmail))
+        ? loader._load(userIdOrEmail)
+        : _getToJsonObjectAsync(client,
+            QuipAccess.ENDPOINT + "/users/" + userIdOrEmail))
+        .thenApply(json -> {
+          QuipUser user = new QuipUser(client, json);
+          user._cachePut(userIdOrEmail);
+          return user;
+        });
+  }
+
+
+  public static CompletableFuture<QuipUser[]> getUsersAsync(
+      String[] userIdOrEmails) throws Exception {
+    return getUsersAsync(QuipClient._getDefault(), userIdOrEmails);
+  }
+
+  public static CompletableFuture<QuipUser[]> getUsersAsync(QuipClient client,
+      String[] userIdOrEmails) throws Exception {
+    return _getToJsonObjectAsync(client,
+        new URIBuilder(QuipAccess.ENDPOINT + "/users/")
+            .addParameter("ids",
+                Stream.of(userIdOrEmails).collect(Collectors.joining(",")))
+            .build())
+        .thenApply(json -> json.keySet().stream()
+            .map(id -> new QuipUser(client, json.get(id).getAsJsonObject()))
+            .toArray(QuipUser[]::new));
+  }
+
+  /**
+   * Fetches any number of users by splitting the ids into chunks that are
+   * requested concurrently. Users that could not be fetched are reported in
+   * {@link QuipBulkResult#getFailures()}.
+   *
+   * @param userIds - user ids; results are matched to them by the keys of
+   *                the bulk response, so emails are reported as failures.
+   * @return - users in the order of {@code userIds}.
+   */
+  public static QuipBulkResult<QuipUser> getUsersBulk(String[] userIds) {
+    return getUsersBulk(QuipClient._getDefault(), userIds);
+  }
+
+  public static QuipBulkResult<QuipUser> getUsersBulk(QuipClient client,
+      String[] userIds) {
+    return getUsersBulkAsync(client, userIds).join();
+  }
+
+  public static CompletableFuture<QuipBulkResult<QuipUser>> getUsersBulkAsync(
+      String[] userIds) {
+    return getUsersBulkAsync(QuipClient._getDefault(), userIds);
+  }
+
+  public static CompletableFuture<QuipBulkResult<QuipUser>> getUsersBulkAsync(
+      QuipClient client, String[] userIds) {
+    return _getBulkAsync(client, QuipAccess.ENDPOINT + "/users/", userIds,
+        json -> new QuipUser(client, json));
   }
 
   public static QuipUser[] getContacts() throws Exception {
-    JsonArray json = _getToJsonArray(QuipAccess.ENDPOINT + "/users/contacts");
+    return getContacts(QuipClient._getDefault());
+  }
+
+  public static QuipUser[] getContacts(QuipClient client) throws Exception {
+    JsonArray json = _getToJsonArray(client,
+        QuipAccess.ENDPOINT + "/users/contacts");
     return StreamSupport.stream(json.spliterator(), false)
-        .map(obj -> new QuipUser(obj.getAsJsonObject()))
+        .map(obj -> new QuipUser(client, obj.getAsJsonObject()))
         .toArray(QuipUser[]::new);
   }
 
+  /**
+   * Refetches the user. With a {@link QuipCache} or {@link QuipSnapshotStore}
+   * configured on the client, a copy that is still fresh is used instead.
+   */
   public boolean reload() throws Exception {
-    JsonObject object = _getToJsonObject(
-        QuipAccess.ENDPOINT + "/users/" + getId());
+    JsonObject object = _getClient()._getCached(QuipCache.USER, getId());
+    if (object == null)
+      object = _getToJsonObject(_getClient(),
+          QuipAccess.ENDPOINT + "/users/" + getId());
     if (object == null)
       return false;
     _replace(object);
@@ -160,11 +305,35 @@ public class QuipUser extends QuipJsonObject {
   public boolean update(String profilePictureUrl) throws Exception {
     Form form = Form.form().add("user_id", getId()).add("profile_picture_url",
         profilePictureUrl);
-    JsonObject object = _postToJsonObject(QuipAccess.ENDPOINT + "/users/update",
-        form);
+    JsonObject object = _postToJsonObject(_getClient(),
+        QuipAccess.ENDPOINT + "/users/update", form);
     if (object == null)
       return false;
     _replace(object);
     return true;
   }
+
+  // ============================================
+  // Cache
+  // ============================================
+
+  @Override
+  protected void _replace(JsonObject object) {
+    super._replace(object);
+    _cachePut(null);
+  }
+
+  private void _cachePut(String requestedIdOrEmail) {
+    _getClient()._putCached(QuipCache.USER, requestedIdOrEmail, getId(),
+        _getJsonObject(), null);
+  }
+
+  // ============================================
+  // Private
+  // ============================================
+
+  private static boolean _isBatchable(String userIdOrEmail) {
+    // The bulk response is keyed by user id, so emails cannot be matched
+    return !userIdOrEmail.contains("@");
+  }
 }
\ No newline at end of file
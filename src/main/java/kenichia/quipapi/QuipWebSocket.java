@@ -16,13 +16,11 @@
 package kenichia.quipapi;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.WebSocket;
 import java.net.http.WebSocket.Listener;
 import java.util.Objects;
 import java.util.concurrent.CompletionStage;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
 public class QuipWebSocket extends QuipJsonObject implements Listener {
@@ -38,6 +36,10 @@ public class QuipWebSocket extends QuipJsonObject implements Listener {
     super(json);
   }
 
+  protected QuipWebSocket(QuipClient client, JsonObject json) {
+    super(client, json);
+  }
+
   // ============================================
   // Properties
   // ============================================
@@ -58,7 +60,7 @@ public class QuipWebSocket extends QuipJsonObject implements Listener {
     Objects.requireNonNull(event);
     URI uri = URI.create(getUrl());
     _event = event;
-    _webSocket = HttpClient.newBuilder().build().newWebSocketBuilder()
+    _webSocket = _getClient()._getHttpClient().newWebSocketBuilder()
         .header("Origin", "http://" + uri.getHost()).buildAsync(uri, this)
         .join();
   }
@@ -84,8 +86,12 @@ public class QuipWebSocket extends QuipJsonObject implements Listener {
   // ============================================
 
   public static QuipWebSocket create() throws Exception {
-    return new QuipWebSocket(
-        _getToJsonObject(QuipAccess.ENDPOINT + "/websockets/new"));
+    return create(QuipClient._getDefault());
+  }
+
+  public static QuipWebSocket create(QuipClient client) throws Exception {
+    return new QuipWebSocket(client,
+        _getToJsonObject(client, QuipAccess.ENDPOINT + "/websockets/new"));
   }
 
   // ============================================
@@ -95,15 +101,18 @@ public class QuipWebSocket extends QuipJsonObject implements Listener {
   @Override
   public CompletionStage<?> onText(WebSocket webSocket, CharSequence data,
       boolean last) {
-    if (QuipClient._isDebugEnabled())
-      System.out.println("WebSocket> " + data + ", last=" + last);
+    QuipLogger logger = _getClient()._getLogger();
+    if (logger != null)
+      logger.debug("WebSocket> " + data + ", last=" + last);
 
-    JsonObject json = new Gson().fromJson(data.toString(), JsonObject.class);
+    JsonObject json = GSON.fromJson(data.toString(), JsonObject.class);
     switch (json.get("type").getAsString()) {
       case "message" :
-        _event.onMessage(new QuipMessage(json.get("message").getAsJsonObject()),
-            new QuipUser(json.get("user").getAsJsonObject()),
-            new QuipThread(json.get("thread").getAsJsonObject()));
+        QuipClient client = _getClient();
+        _event.onMessage(
+            new QuipMessage(client, json.get("message").getAsJsonObject()),
+            new QuipUser(client, json.get("user").getAsJsonObject()),
+            new QuipThread(client, json.get("thread").getAsJsonObject()));
         break;
       case "heartbeat" :
         _event.onHeartbeat();
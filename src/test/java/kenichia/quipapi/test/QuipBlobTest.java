@@ -19,7 +19,13 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -62,6 +68,40 @@ public class QuipBlobTest {
     thread.delete();
   }
 
+  @Test
+  void getBlobToPath() throws Exception {
+    QuipThread thread = QuipThread.createDocument("Sample document",
+        "Let's start!", null, Format.HTML, Type.DOCUMENT);
+    File file = new File("/tmp/image.png");
+    QuipBlob blob = thread.addBlob(file);
+    Path path = Files.createTempFile("blob", ".png");
+    long size = thread.getBlob(blob.getId(), path);
+    assertEquals(file.length(), size);
+    assertEquals(file.length(), Files.size(path));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(file.length(), thread.getBlob(blob.getId(), out));
+    assertEquals(file.length(), out.size());
+    Files.delete(path);
+    thread.delete();
+  }
+
+  @Test
+  void addBlobFromStream() throws Exception {
+    QuipThread thread = QuipThread.createDocument("Sample document",
+        "Let's start!", null, Format.HTML, Type.DOCUMENT);
+    File file = new File("/tmp/image.png");
+    AtomicLong progress = new AtomicLong();
+    QuipBlob blob;
+    try (InputStream in = new FileInputStream(file)) {
+      blob = thread.addBlob(in, file.length(), "image.png",
+          (sent, total) -> progress.set(sent));
+    }
+    assertFalse(blob.getId().isEmpty());
+    assertEquals(file.length(), progress.get());
+    assertEquals(file.length(), thread.getBlob(blob.getId()).length);
+    thread.delete();
+  }
+
   @Test
   void addBlob2() throws Exception {
     QuipThread thread = QuipThread.createDocument("タイトル🌈", "新規作成🔥", null,
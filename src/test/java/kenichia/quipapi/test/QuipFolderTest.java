@@ -20,12 +20,20 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import kenichia.quipapi.QuipAccessGraph;
 import kenichia.quipapi.QuipClient;
+import kenichia.quipapi.QuipCrawlVisitor;
 import kenichia.quipapi.QuipFolder;
 import kenichia.quipapi.QuipFolder.Color;
+import kenichia.quipapi.QuipFolderCrawler;
+import kenichia.quipapi.QuipThread;
 
 public class QuipFolderTest {
     @BeforeAll
@@ -51,6 +59,18 @@ public class QuipFolderTest {
         assertEquals(folder1.getId(), folders[0].getId());
     }
 
+    @Test
+    void getFolderAsync() throws Exception {
+        QuipFolder folder = QuipFolder.create("フォルダー１🌈", Color.LIGHT_PURPLE,
+                null, null, true);
+        QuipFolder folder1 = QuipFolder.getFolderAsync(folder.getId(), true)
+                .get();
+        assertEquals(folder.getId(), folder1.getId());
+        QuipFolder[] folders = QuipFolder.getFoldersAsync(
+                new String[]{folder.getId()}, false).get();
+        assertEquals(folder.getId(), folders[0].getId());
+    }
+
     @Test
     void createFolder() throws Exception {
         QuipFolder folder = QuipFolder.create("フォルダー１🌈", Color.LIGHT_PURPLE,
@@ -81,4 +101,58 @@ public class QuipFolderTest {
         assertTrue(node.isFolder());
         assertEquals(child.getId(), node.getId());
     }
+
+    @Test
+    void crawlFolders() throws Exception {
+        QuipFolder parent = QuipFolder.create("親フォルダー🌈", Color.LIGHT_PURPLE,
+                null, null, false);
+        QuipFolder child = QuipFolder.create("子フォルダー🌈", Color.LIGHT_GREEN,
+                parent.getId(), null, false);
+        QuipThread thread = QuipThread.createDocument("クロール🌈",
+                "<p>テスト</p>", new String[]{child.getId()},
+                QuipThread.Format.HTML, QuipThread.Type.DOCUMENT);
+
+        List<String> folderIds = new ArrayList<>();
+        List<String> threadIds = new ArrayList<>();
+        int visited = new QuipFolderCrawler().crawl(
+                new String[]{parent.getId(), parent.getId()},
+                new QuipCrawlVisitor() {
+                    @Override
+                    public void onFolder(QuipFolder folder, int depth) {
+                        folderIds.add(folder.getId());
+                    }
+
+                    @Override
+                    public void onThread(QuipThread t, int depth) {
+                        assertEquals(2, depth);
+                        threadIds.add(t.getId());
+                    }
+                });
+        assertEquals(2, visited);
+        assertEquals(List.of(parent.getId(), child.getId()), folderIds);
+        assertEquals(List.of(thread.getId()), threadIds);
+    }
+
+    @Test
+    void buildAccessGraph() throws Exception {
+        QuipFolder parent = QuipFolder.create("親フォルダー🌈", Color.LIGHT_PURPLE,
+                null, null, false);
+        QuipFolder child = QuipFolder.create("子フォルダー🌈", Color.LIGHT_GREEN,
+                parent.getId(), null, false);
+        QuipThread thread = QuipThread.createDocument("グラフ🌈",
+                "<p>テスト</p>", new String[]{child.getId()},
+                QuipThread.Format.HTML, QuipThread.Type.DOCUMENT);
+
+        QuipAccessGraph graph = new QuipAccessGraph();
+        new QuipFolderCrawler().crawl(new String[]{parent.getId()}, graph);
+        String userId = parent.getCreatorId();
+        assertTrue(Arrays.asList(graph.getThreadIdsForUser(userId))
+                .contains(thread.getId()));
+        assertTrue(Arrays.asList(graph.getUserIdsForThread(thread.getId()))
+                .contains(userId));
+        assertTrue(graph.canAccess(userId, thread.getId()));
+
+        graph.removeThread(thread.getId());
+        assertFalse(graph.canAccess(userId, thread.getId()));
+    }
 }
\ No newline at end of file
@@ -24,6 +24,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -63,6 +65,23 @@ public class QuipMessageTest {
     doc.delete();
   }
 
+  @Test
+  void streamRecentMessages() throws Exception {
+    QuipThread doc = QuipThread.createDocument("ドキュメント１🌈", "あいうえお🔥", null,
+        Format.HTML, Type.DOCUMENT);
+    for (int i = 1; i <= 5; i++)
+      doc.addMessage(Frame.BUBBLE, "コメント" + i, null, false, null, null, null);
+
+    List<String> texts;
+    try (Stream<QuipMessage> msgs = doc.streamRecentMessages(2,
+        MessageType.MESSAGE, true)) {
+      texts = msgs.map(QuipMessage::getText).collect(Collectors.toList());
+    }
+    assertEquals(List.of("コメント5", "コメント4", "コメント3", "コメント2", "コメント1"),
+        texts);
+    doc.delete();
+  }
+
   @Test
   void getRecentMessagesWithCount() throws Exception {
     QuipThread doc = QuipThread.createDocument("ドキュメント１🌈", "あいうえお🔥", null,
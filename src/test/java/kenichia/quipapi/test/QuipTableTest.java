@@ -15,13 +15,27 @@
  */
 package kenichia.quipapi.test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import kenichia.quipapi.QuipClient;
+import kenichia.quipapi.QuipColumnarTable;
 import kenichia.quipapi.QuipTable;
+import kenichia.quipapi.QuipTableExporter;
+import kenichia.quipapi.QuipTableWriter;
 import kenichia.quipapi.QuipThread;
 
 public class QuipTableTest {
@@ -103,4 +117,126 @@ public class QuipTableTest {
     table.addRow(0, new String[]{"あ🚀", "い💫", "う🌕", "え🌛"});
     assertEquals(5, table.getRowSize());
   }
+
+  @Test
+  void updateTableInBatch() throws Exception {
+    QuipThread doc = QuipThread.createDocument("バッチ更新テスト",
+        QuipTable.createTableHtml(3, 3), null, QuipThread.Format.HTML,
+        QuipThread.Type.DOCUMENT);
+    QuipTable table = doc.getTableById(doc.getTableIds()[0]);
+    boolean isCommitted = table.batch().updateCellValue(0, 0, "🐤")
+        .updateCellValue(1, 1, "🐔").updateCellValue(2, 1, "🐣")
+        .addRow(2, new String[]{"あ", "い", "う"}).removeRow(2)
+        .addRow(new String[]{"か", "き", "く"}).commit();
+    assertTrue(isCommitted);
+    assertEquals(4, table.getRowSize());
+    assertEquals("🐤", table.getCellValue(0, 0));
+    assertEquals("🐔", table.getCellValue(1, 1));
+    assertEquals("🐣", table.getCellValue(2, 1));
+    assertEquals("い", table.getCellValue(1, 2));
+    assertEquals("く", table.getCellValue(2, 3));
+  }
+
+  @Test
+  void addRowsToTables() throws Exception {
+    QuipThread doc = QuipThread.createDocument("一括追加テスト",
+        QuipTable.createTableHtml(2, 1), null, QuipThread.Format.HTML,
+        QuipThread.Type.DOCUMENT);
+    doc.editDocument(QuipTable.createTableHtml(2, 1), QuipThread.Format.HTML,
+        QuipThread.Location.APPEND, null);
+    String[] tableIds = doc.getTableIds();
+    QuipTable table1 = doc.getTableById(tableIds[0]);
+    QuipTable table2 = doc.getTableById(tableIds[1]);
+
+    String[][] rows = new String[50][];
+    for (int i = 0; i < rows.length; i++)
+      rows[i] = new String[]{"行" + i, "🐤"};
+    assertTrue(table1.addRows(rows));
+    assertEquals(51, table1.getRowSize());
+    assertEquals("行0", table1.getCellValue(0, 1));
+    assertEquals("行49", table1.getCellValue(0, 50));
+    assertTrue(table1.insertRows(1, new String[][]{{"あ", "い"}, {"う", "え"}}));
+    assertEquals("あ", table1.getCellValue(0, 1));
+    assertEquals("う", table1.getCellValue(0, 2));
+    assertEquals("行0", table1.getCellValue(0, 3));
+
+    assertTrue(QuipTable.addRows(Map.of(table1, new String[][]{{"か", "き"}},
+        table2, new String[][]{{"さ", "し"}}), 2));
+    assertEquals("か", table1.getCellValue(0, 53));
+    assertEquals("さ", table2.getCellValue(0, 1));
+  }
+
+  @Test
+  void writeTableHtmlInChunks() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    new QuipTableWriter(sb).writeStart(new String[]{"A<B"})
+        .writeRow(new String[]{"x&y"}).writeEnd();
+    assertEquals("<table><thead><tr><th>A&lt;B</th></tr></thead>"
+        + "<tbody><tr><td>x&amp;y</td></tr></tbody></table>", sb.toString());
+
+    List<String[]> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++)
+      rows.add(new String[]{"行" + i, "🐤"});
+    List<String> chunks = QuipTableWriter
+        .rowChunks(rows.iterator(), 1024, true).collect(Collectors.toList());
+    assertTrue(chunks.size() > 1);
+    for (String chunk : chunks)
+      assertTrue(chunk.getBytes(StandardCharsets.UTF_8).length <= 1024);
+    assertEquals(1000, chunks.stream()
+        .mapToInt(chunk -> chunk.split("<tr>").length - 1).sum());
+  }
+
+  @Test
+  void readTableAsColumns() throws Exception {
+    String html = QuipTable.createTableHtml(new String[]{"名前", "数量", "単価"},
+        new String[][]{new String[]{"りんご🍎", "3", "1.5"},
+            new String[]{"みかん🍊", "", "0.25"},
+            new String[]{"ぶどう🍇", "1,200", "不明"}});
+    QuipThread doc = QuipThread.createDocument("列指向テスト", html, null,
+        QuipThread.Format.HTML, QuipThread.Type.DOCUMENT);
+    QuipColumnarTable table = doc.getTableById(doc.getTableIds()[0])
+        .toColumnar();
+    assertEquals(3, table.getColumnSize());
+    assertEquals(3, table.getRowSize());
+    assertEquals("数量", table.getColumnHeader(1));
+    assertEquals("みかん🍊", table.getCellValue(0, 1));
+
+    QuipColumnarTable.LongColumn counts = table.getLongColumn(1);
+    assertTrue(counts.isNull(1));
+    assertEquals(1203, counts.stream().sum());
+    QuipColumnarTable.DoubleColumn prices = table.getDoubleColumn(2);
+    assertEquals(1, prices.getNullCount());
+    assertEquals(1.75, prices.stream().sum());
+    assertArrayEquals(new int[]{2},
+        table.scan(0, value -> value.startsWith("ぶどう")));
+  }
+
+  @Test
+  void exportSpreadsheet() throws Exception {
+    String html = QuipTable.createTableHtml(new String[]{"列A🚀", "列B💫"},
+        new String[][]{new String[]{"セル,A1", "\"B1\""},
+            new String[]{"セルA2", "セルB2"},
+            new String[]{"セルA3", "セルB3"}});
+    QuipThread sheet = QuipThread.createDocument("エクスポートテスト", html, null,
+        QuipThread.Format.HTML, QuipThread.Type.SPREADSHEET);
+    QuipTable table = sheet.getTableById(sheet.getTableIds()[0]);
+
+    StringWriter csv = new StringWriter();
+    assertTrue(new QuipTableExporter(QuipTableExporter.Format.CSV, false)
+        .export(table, csv));
+    assertTrue(csv.toString()
+        .startsWith("\"セル,A1\",\"\"\"B1\"\"\"\r\n\"セルA2\""));
+
+    Path dir = Files.createTempDirectory("quip");
+    Path[] files = new QuipTableExporter(QuipTableExporter.Format.TSV, true)
+        .export(sheet, dir);
+    assertEquals(1, files.length);
+    assertTrue(Files.readAllLines(files[0]).contains("セルA3\tセルB3"));
+
+    List<QuipColumnarTable> batches = QuipTableExporter
+        .toRecordBatches(sheet, 2).collect(Collectors.toList());
+    assertEquals(2, batches.size());
+    assertEquals(2, batches.get(1).getFirstRow());
+    assertEquals("セルB3", batches.get(1).getCellValue(1, 0));
+  }
 }
\ No newline at end of file
@@ -15,13 +15,19 @@
  */
 package kenichia.quipapi.test;
 
+import kenichia.quipapi.QuipBulkResult;
 import kenichia.quipapi.QuipClient;
 import kenichia.quipapi.QuipMessage;
+import kenichia.quipapi.QuipSnapshotStore;
+import kenichia.quipapi.QuipSyncEngine;
 import kenichia.quipapi.QuipThread;
 import kenichia.quipapi.QuipThread.*;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -54,6 +60,102 @@ public class QuipThreadTest {
     doc1.delete();
   }
 
+  @Test
+  void getThreadAsync() throws Exception {
+    QuipThread doc1 = QuipThread.createDocument("ドキュメント１🌈", "あいうえお🔥", null,
+        Format.HTML, Type.DOCUMENT);
+    QuipThread doc1a = QuipThread.getThreadAsync(doc1.getId()).get();
+    assertEquals(doc1.getId(), doc1a.getId());
+    QuipThread[] docs = QuipThread
+        .getThreadsAsync(new String[]{doc1.getId()}).get();
+    assertEquals(doc1.getId(), docs[0].getId());
+    doc1.delete();
+  }
+
+  @Test
+  void getThreadsBulk() throws Exception {
+    QuipThread doc1 = QuipThread.createDocument("ドキュメント１🌈", "あいうえお🔥", null,
+        Format.HTML, Type.DOCUMENT);
+    QuipThread doc2 = QuipThread.createDocument("ドキュメント２🌈", "かきくけこ🔥", null,
+        Format.HTML, Type.DOCUMENT);
+    try (QuipClient client = QuipClient.builder()
+        .accessToken(System.getenv("QUIP_ACCESS_TOKEN")).bulkChunkSize(1)
+        .bulkParallelism(2).build()) {
+      QuipBulkResult<QuipThread> result = QuipThread.getThreadsBulk(client,
+          new String[]{doc2.getId(), "unknown", doc1.getId(), doc2.getId()});
+      assertEquals(4, result.getResults().size());
+      assertEquals(doc2.getId(), result.getResults().get(0).getId());
+      assertNull(result.getResults().get(1));
+      assertEquals(doc1.getId(), result.getResults().get(2).getId());
+      assertEquals(doc2.getId(), result.getResults().get(3).getId());
+      assertTrue(result.getFailures().containsKey("unknown"));
+    }
+    doc1.delete();
+    doc2.delete();
+  }
+
+  @Test
+  void getThreadCached() throws Exception {
+    try (QuipClient client = QuipClient.builder()
+        .accessToken(System.getenv("QUIP_ACCESS_TOKEN"))
+        .cache(Duration.ofMinutes(5), 10_000_000).build()) {
+      QuipThread doc1 = QuipThread.createDocument(client, "ドキュメント１🌈",
+          "あいうえお🔥", null, Format.HTML, Type.DOCUMENT);
+      QuipThread doc1a = QuipThread.getThread(client, doc1.getId());
+      QuipThread doc1b = QuipThread.getThread(client, doc1.getId());
+      assertEquals(doc1a.getHtml(), doc1b.getHtml());
+      assertTrue(client.getCache().getHitCount() >= 1);
+      doc1.delete();
+      assertEquals(0, client.getCache().size());
+    }
+  }
+
+  @Test
+  void getThreadFromSnapshotStore() throws Exception {
+    Path directory = Files.createTempDirectory("snapshots");
+    QuipThread doc1 = QuipThread.createDocument("ドキュメント１🌈", "あいうえお🔥", null,
+        Format.HTML, Type.DOCUMENT);
+    try (QuipSnapshotStore store = QuipSnapshotStore.open(directory);
+        QuipClient client = QuipClient.builder()
+            .accessToken(System.getenv("QUIP_ACCESS_TOKEN"))
+            .snapshotStore(store, Duration.ofHours(1)).build()) {
+      QuipThread.getThread(client, doc1.getId());
+      assertEquals(1, store.size());
+    }
+    try (QuipSnapshotStore store = QuipSnapshotStore.open(directory);
+        QuipClient client = QuipClient.builder()
+            .accessToken(System.getenv("QUIP_ACCESS_TOKEN"))
+            .snapshotStore(store, Duration.ofHours(1)).build()) {
+      assertEquals(1, store.size());
+      QuipThread doc1a = QuipThread.getThread(client, doc1.getId());
+      assertEquals(doc1.getHtml(), doc1a.getHtml());
+    }
+    doc1.delete();
+  }
+
+  @Test
+  void syncRecentThreads() throws Exception {
+    Path state = Files.createTempDirectory("sync").resolve("state");
+    QuipThread doc1 = QuipThread.createDocument("ドキュメント１🌈", "あいうえお🔥", null,
+        Format.HTML, Type.DOCUMENT);
+    try (QuipClient client = QuipClient.builder()
+        .accessToken(System.getenv("QUIP_ACCESS_TOKEN")).build()) {
+      List<String> changed = new ArrayList<>();
+      QuipSyncEngine engine = new QuipSyncEngine(client, state,
+          thread -> changed.add(thread.getId()), 10, false);
+      Instant now = Instant.now();
+      engine.sync();
+      assertTrue(changed.contains(doc1.getId()));
+      assertNotNull(engine.getHighWaterMark());
+      changed.clear();
+      doc1.editDocument("かきくけこ", Format.MARKDOWN, null, null);
+      engine.sync();
+      assertTrue(changed.contains(doc1.getId()));
+      assertTrue(engine.getHighWaterMark().isAfter(now));
+    }
+    doc1.delete();
+  }
+
   @Test
   void getRecentThreads() throws Exception {
     QuipThread[] threads = QuipThread.getRecentThreads();
@@ -361,4 +463,35 @@ public class QuipThreadTest {
     }
     return sectionIds;
   }
+
+  @Test
+  void getThreadsWithFields() throws Exception {
+    QuipThread doc = QuipThread.createDocument("フィールド指定🌈", "あいうえお🔥", null,
+        Format.HTML, Type.DOCUMENT);
+    QuipThread[] threads = QuipThread.getThreads(new String[]{doc.getId()},
+        new String[]{"user_ids"});
+    assertEquals(1, threads.length);
+    assertEquals(doc.getId(), threads[0].getId());
+    assertEquals(doc.getTitle(), threads[0].getTitle());
+    assertNotNull(threads[0].getUserIds());
+    assertTrue(threads[0].getHtml().contains("あいうえお🔥"));
+    doc.delete();
+  }
+
+  @Test
+  void getThreadMetadata() throws Exception {
+    QuipThread doc = QuipThread.createDocument("メタデータ🌈", "かきくけこ🔥", null,
+        Format.HTML, Type.DOCUMENT);
+    QuipThread thread = QuipThread.getThreadMetadata(doc.getId());
+    assertEquals(doc.getTitle(), thread.getTitle());
+    assertEquals(doc.getUpdatedUsec(), thread.getUpdatedUsec());
+    assertTrue(thread.getHtml().contains("かきくけこ🔥"));
+
+    QuipThread[] threads = QuipThread.getThreadsMetadata(
+        new String[]{doc.getId(), doc.getId()});
+    assertEquals(1, threads.length);
+    assertEquals(doc.getId(), threads[0].getId());
+    assertTrue(threads[0].getHtml().contains("かきくけこ🔥"));
+    doc.delete();
+  }
 }
\ No newline at end of file
@@ -18,9 +18,14 @@ package kenichia.quipapi.test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -80,4 +85,61 @@ public class QuipUserTest {
         .getUsers(new String[]{user.getId(), user.getId()});
     assertEquals(user.getId(), users[0].getId());
   }
+
+  @Test
+  void getUserAsync() throws Exception {
+    QuipUser user = QuipUser.getCurrentUser();
+    QuipUser user1 = QuipUser.getUserAsync(user.getId()).get();
+    assertEquals(user.getId(), user1.getId());
+    QuipUser[] users = QuipUser.getUsersAsync(new String[]{user.getId()})
+        .get();
+    assertEquals(user.getId(), users[0].getId());
+  }
+
+  @Test
+  void getUserWithClient() throws Exception {
+    try (QuipClient client = QuipClient.builder()
+        .accessToken(System.getenv("QUIP_ACCESS_TOKEN")).maxConnections(4)
+        .connectTimeout(Duration.ofSeconds(10)).build()) {
+      assertTrue(client.verifyToken());
+      QuipUser user = QuipUser.getCurrentUser(client);
+      QuipUser user1 = QuipUser.getUser(client, user.getId());
+      assertEquals(user.getId(), user1.getId());
+      assertTrue(user1.reload());
+      assertTrue(client.getRateLimit().getUserLimit() >= 0);
+      assertEquals(0, client.getRateLimiter().getQueueDepth());
+    }
+  }
+
+  @Test
+  void getUserBatched() throws Exception {
+    try (QuipClient client = QuipClient.builder()
+        .accessToken(System.getenv("QUIP_ACCESS_TOKEN"))
+        .batchWindow(Duration.ofMillis(50)).build()) {
+      QuipUser user = QuipUser.getCurrentUser(client);
+      CompletableFuture<QuipUser> user1 = QuipUser.getUserAsync(client,
+          user.getId());
+      CompletableFuture<QuipUser> user2 = QuipUser.getUserAsync(client,
+          user.getId());
+      assertEquals(user.getId(), user1.get().getId());
+      assertEquals(user.getId(), user2.get().getId());
+      assertEquals(user.getId(), QuipUser.getUser(client, user.getId()).getId());
+    }
+  }
+
+  @Test
+  void getUserBatchedWithInvalidId() throws Exception {
+    try (QuipClient client = QuipClient.builder()
+        .accessToken(System.getenv("QUIP_ACCESS_TOKEN"))
+        .batchWindow(Duration.ofMillis(50)).build()) {
+      QuipUser user = QuipUser.getCurrentUser(client);
+      CompletableFuture<QuipUser> valid = QuipUser.getUserAsync(client,
+          user.getId());
+      CompletableFuture<QuipUser> invalid = QuipUser.getUserAsync(client,
+          "invalid-user-id");
+      assertThrows(ExecutionException.class,
+          () -> invalid.get(30, TimeUnit.SECONDS));
+      assertEquals(user.getId(), valid.get(30, TimeUnit.SECONDS).getId());
+    }
+  }
 }
\ No newline at end of file
@@ -19,12 +19,17 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import java.time.Duration;
+
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import kenichia.quipapi.QuipCacheInvalidator;
 import kenichia.quipapi.QuipClient;
 import kenichia.quipapi.QuipMessage;
 import kenichia.quipapi.QuipThread;
+import kenichia.quipapi.QuipThread.Format;
+import kenichia.quipapi.QuipThread.Type;
 import kenichia.quipapi.QuipUser;
 import kenichia.quipapi.QuipWebSocket;
 import kenichia.quipapi.QuipWebSocketEvent;
@@ -55,6 +60,27 @@ public class QuipWebSocketTest implements QuipWebSocketEvent {
     qws.close();
   }
 
+  @Test
+  void openWithCacheInvalidator() throws Exception {
+    try (QuipClient client = QuipClient.builder()
+        .accessToken(System.getenv("QUIP_ACCESS_TOKEN"))
+        .cache(Duration.ofMinutes(5), 10_000_000).build()) {
+      QuipThread doc = QuipThread.createDocument(client, "Sample document",
+          "Let's start!", null, Format.HTML, Type.DOCUMENT);
+      QuipThread.getThread(client, doc.getId());
+      QuipWebSocket qws = QuipWebSocket.create(client);
+      qws.open(new QuipCacheInvalidator(client, this, false));
+      qws.checkAlive();
+      doc.addMessage(null, "Hello", null, null, null, null, null);
+      Thread.sleep(5000);
+      assertEquals(1, aliveCounter);
+      QuipThread.getThread(client, doc.getId());
+      assertEquals(2, client.getCache().getMissCount());
+      qws.close();
+      doc.delete();
+    }
+  }
+
   @Override
   public void onMessage(QuipMessage message, QuipUser user, QuipThread thread) {
     System.out.println(